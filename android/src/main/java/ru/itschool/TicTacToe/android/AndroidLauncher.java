@@ -1,5 +1,6 @@
 package ru.itschool.TicTacToe.android;
 
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 
 import com.badlogic.gdx.backends.android.AndroidApplication;
@@ -13,6 +14,10 @@ public class AndroidLauncher extends AndroidApplication {
         super.onCreate(savedInstanceState);
         AndroidApplicationConfiguration configuration = new AndroidApplicationConfiguration();
         configuration.useImmersiveMode = true; // Recommended, but not required.
-        initialize(new TicTacToeGame(), configuration);
+        // a GL ES 3 context lets the game load its ETC2 compressed atlas; older devices fall back to GL ES 2
+        configuration.useGL30 = true;
+        // debuggable builds write the metrics to the app's files directory every time the app is paused
+        boolean exportMetrics = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        initialize(new TicTacToeGame(new RuntimeStatGcSampler(), exportMetrics), configuration);
     }
 }
@@ -0,0 +1,30 @@
+package ru.itschool.TicTacToe.android;
+
+import android.os.Build;
+import android.os.Debug;
+
+import ru.itschool.TicTacToe.metrics.Metrics;
+
+/** Reads GC totals from ART's runtime stats, which are available from Android 6.0 on. */
+class RuntimeStatGcSampler implements Metrics.GcSampler {
+    @Override
+    public long getCollectionCount() {
+        return read("art.gc.gc-count");
+    }
+
+    @Override
+    public long getCollectionTimeMillis() {
+        return read("art.gc.gc-time");
+    }
+
+    private static long read(String stat) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return -1;
+        String value = Debug.getRuntimeStat(stat);
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
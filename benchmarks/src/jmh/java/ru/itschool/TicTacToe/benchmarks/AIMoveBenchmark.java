@@ -0,0 +1,56 @@
+package ru.itschool.TicTacToe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.itschool.TicTacToe.engine.AlphaBetaSearch;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.Rules;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded AI move selection from the empty board to a fixed depth, with a cleared
+ * transposition table and no opening book, so the result does not depend on the machine's speed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AIMoveBenchmark {
+    @Param({"3x3:9", "4x4:6", "5x5:4", "7x7/4:3", "15x15/5:2"})
+    public String rulesAndDepth;
+
+    private AlphaBetaSearch search;
+    private Board board;
+
+    @Setup
+    public void setUp() {
+        String[] parts = rulesAndDepth.split(":");
+        board = new Board(Rules.parse(parts[0]));
+        search = new AlphaBetaSearch();
+        search.setMaxDepth(Integer.parseInt(parts[1]));
+        search.setTimeBudgetMillis(TimeUnit.HOURS.toMillis(1));
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        search.getTable().clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        search.close();
+    }
+
+    @Benchmark
+    public int chooseMove() {
+        return search.chooseMove(board);
+    }
+}
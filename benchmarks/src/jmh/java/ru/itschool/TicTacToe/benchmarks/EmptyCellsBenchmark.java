@@ -0,0 +1,43 @@
+package ru.itschool.TicTacToe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.Rules;
+
+import java.util.concurrent.TimeUnit;
+
+/** Enumerating the empty cells of half-played positions, the core of move generation. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EmptyCellsBenchmark {
+    private static final int POSITIONS = 256;
+
+    @Param({"3x3", "4x4", "5x5", "8x8", "15x15/5"})
+    public String rules;
+
+    private Board[] positions;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        positions = Games.midgamePositions(Rules.parse(rules), POSITIONS, 7);
+    }
+
+    @Benchmark
+    public int enumerate() {
+        Board board = positions[next++ & (POSITIONS - 1)];
+        int sum = 0;
+        for (int cell = board.nextEmpty(0); cell >= 0; cell = board.nextEmpty(cell + 1)) {
+            sum += cell;
+        }
+        return sum;
+    }
+}
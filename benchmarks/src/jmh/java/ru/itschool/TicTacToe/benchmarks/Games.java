@@ -0,0 +1,46 @@
+package ru.itschool.TicTacToe.benchmarks;
+
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.RandomPlayer;
+import ru.itschool.TicTacToe.engine.Rules;
+
+import java.util.Arrays;
+
+/** Fixed-seed random games shared by the benchmarks, so every run measures the same positions. */
+final class Games {
+    private Games() {
+    }
+
+    /** @return the moves of each game, played to the end */
+    static int[][] randomGames(Rules rules, int count, long seed) {
+        RandomPlayer player = new RandomPlayer(seed);
+        Board board = new Board(rules);
+        int[][] games = new int[count][];
+        int[] moves = new int[rules.getCellCount()];
+        for (int i = 0; i < count; i++) {
+            board.reset();
+            int length = 0;
+            while (board.getState() == GameState.PLAYING) {
+                int cell = player.chooseMove(board);
+                board.play(cell);
+                moves[length++] = cell;
+            }
+            games[i] = Arrays.copyOf(moves, length);
+        }
+        return games;
+    }
+
+    /** @return boards with the first half of each game played */
+    static Board[] midgamePositions(Rules rules, int count, long seed) {
+        int[][] games = randomGames(rules, count, seed);
+        Board[] boards = new Board[count];
+        for (int i = 0; i < count; i++) {
+            boards[i] = new Board(rules);
+            for (int m = 0; m < games[i].length / 2; m++) {
+                boards[i].play(games[i][m]);
+            }
+        }
+        return boards;
+    }
+}
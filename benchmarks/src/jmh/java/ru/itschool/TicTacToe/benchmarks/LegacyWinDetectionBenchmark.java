@@ -0,0 +1,79 @@
+package ru.itschool.TicTacToe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.itschool.TicTacToe.engine.Rules;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline for {@link WinDetectionBenchmark}: the same games checked the way the original
+ * {@code GameScreen.checkGameState()} did, scanning every row, column, both diagonals and then
+ * the whole board for a draw after each move of a {@code char[][]} board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LegacyWinDetectionBenchmark {
+    private static final int GAMES = 256;
+
+    @Param({"3", "4", "5", "8"})
+    public int fieldSize;
+
+    private char[][] board;
+    private int[][] games;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        board = new char[fieldSize][fieldSize];
+        games = Games.randomGames(Rules.classic(fieldSize), GAMES, 42);
+    }
+
+    @Benchmark
+    public boolean playGame() {
+        int[] moves = games[next++ & (GAMES - 1)];
+        boolean over = false;
+        char player = 'X';
+        for (int cell : moves) {
+            board[cell / fieldSize][cell % fieldSize] = player;
+            over = checkGameState(player);
+            player = player == 'X' ? 'O' : 'X';
+        }
+        for (char[] row : board) {
+            Arrays.fill(row, (char) 0);
+        }
+        return over;
+    }
+
+    private boolean checkLine(int startRow, int startCol, int rowDelta, int colDelta, char player) {
+        for (int i = 0; i < fieldSize; i++) {
+            int row = startRow + i * rowDelta;
+            int col = startCol + i * colDelta;
+            if (row < 0 || row >= fieldSize || col < 0 || col >= fieldSize || board[row][col] != player) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean checkGameState(char player) {
+        for (int i = 0; i < fieldSize; i++) {
+            if (checkLine(i, 0, 0, 1, player) || checkLine(0, i, 1, 0, player)) return true;
+        }
+        if (checkLine(0, 0, 1, 1, player) || checkLine(0, fieldSize - 1, 1, -1, player)) return true;
+        for (int row = 0; row < fieldSize; row++) {
+            for (int col = 0; col < fieldSize; col++) {
+                if (board[row][col] == 0) return false;
+            }
+        }
+        return true;
+    }
+}
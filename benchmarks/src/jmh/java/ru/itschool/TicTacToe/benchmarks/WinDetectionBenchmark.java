@@ -0,0 +1,53 @@
+package ru.itschool.TicTacToe.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.Rules;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of playing and taking back a whole game on {@link Board}, i.e. one win check per move.
+ * Compare with {@link LegacyWinDetectionBenchmark} for the full-board scan GameScreen used to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WinDetectionBenchmark {
+    private static final int GAMES = 256;
+
+    @Param({"3x3", "4x4", "5x5", "8x8", "7x7/4", "15x15/5"})
+    public String rules;
+
+    private Board board;
+    private int[][] games;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Rules parsed = Rules.parse(rules);
+        board = new Board(parsed);
+        games = Games.randomGames(parsed, GAMES, 42);
+    }
+
+    @Benchmark
+    public GameState playGame() {
+        int[] moves = games[next++ & (GAMES - 1)];
+        GameState state = GameState.PLAYING;
+        for (int cell : moves) {
+            state = board.play(cell);
+        }
+        for (int i = moves.length - 1; i >= 0; i--) {
+            board.undo(moves[i]);
+        }
+        return state;
+    }
+}
@@ -0,0 +1,348 @@
+package ru.itschool.TicTacToe.brain;
+
+import ru.itschool.TicTacToe.engine.AlphaBetaSearch;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.MctsSearch;
+import ru.itschool.TicTacToe.engine.OpeningBook;
+import ru.itschool.TicTacToe.engine.Rules;
+import ru.itschool.TicTacToe.engine.SearchEngine;
+import ru.itschool.TicTacToe.engine.SearchStats;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The game's AI as a headless engine for tournament managers, speaking the Gomocup brain protocol on
+ * standard input and output, one command per line.
+ * <p>
+ * {@code START n} or {@code RECTSTART w,h} sets up an empty field: a preset of that size if there is one,
+ * otherwise five in a row, or the shorter side on smaller fields. {@code TURN x,y} plays the opponent's move
+ * and {@code BEGIN} asks for the first move; both are answered with the engine's move as {@code x,y},
+ * which it also plays. {@code BOARD}, lines of {@code x,y,owner} (1 the engine, 2 the opponent) and
+ * {@code DONE} set a whole position and get a move the same way. {@code TAKEBACK x,y} takes back the last
+ * move, {@code RESTART} empties the field, {@code ABOUT} names the engine and {@code END} quits, also in the
+ * middle of a search. Errors are reported as {@code ERROR message} and each move is preceded by
+ * {@code MESSAGE} with the search depth, score, nodes and time.
+ * <p>
+ * {@code INFO timeout_turn}, {@code INFO timeout_match} and {@code INFO time_left}, in milliseconds, limit
+ * the search: each move gets an even share of the time left for the moves still to come, never more than
+ * the turn timeout, which also caps the search outright. Beyond the Gomocup commands, {@code RULES 7x7/4}
+ * sets any field and win length, {@code INFO engine mcts|alphabeta} picks the search and
+ * {@code INFO threads n} the thread count, all processors by default. Opening books are read from the
+ * working directory.
+ */
+public final class Brain {
+    private static final String ABOUT = "name=\"TicTacToe\", version=\"1.0\"";
+    /** Kept back from the time left in the match for parsing and answering. */
+    private static final long RESERVE_MILLIS = 50;
+    /** The engine's own moves still to come when planning a move's share of the match time, at least. */
+    private static final int MIN_MOVES_TO_GO = 10;
+
+    private final PrintStream out;
+    private final ExecutorService searchThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "brain-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> running;
+
+    private Board board;
+    /** Moves in order, for TAKEBACK. */
+    private int[] moves = new int[0];
+    private SearchEngine search;
+    private boolean monteCarlo;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long timeoutTurnMillis = 5000;
+    /** 0 for no limit on the whole match. */
+    private long timeoutMatchMillis;
+    private long timeLeftMillis = Long.MAX_VALUE;
+
+    private Brain(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        PrintStream out = new PrintStream(System.out, true, StandardCharsets.UTF_8);
+        new Brain(out).run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+    }
+
+    private void run(BufferedReader in) throws IOException, InterruptedException {
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String[] words = line.split("\\s+", 2);
+            String command = words[0].toUpperCase(Locale.ROOT);
+            String argument = words.length > 1 ? words[1] : "";
+            if (command.equals("END")) {
+                if (running != null) search.stop();
+                break;
+            }
+            // the next command waits for the move being searched, so the answers keep their order
+            awaitSearch();
+            try {
+                handle(command, argument, in);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                out.println("ERROR " + e.getMessage());
+            }
+        }
+        awaitSearch();
+        searchThread.shutdown();
+        if (search != null) search.close();
+    }
+
+    private void handle(String command, String argument, BufferedReader in) throws IOException {
+        switch (command) {
+            case "START": {
+                int size = parseNumber(argument);
+                start(defaultRules(size, size));
+                break;
+            }
+            case "RECTSTART": {
+                String[] size = argument.split(",");
+                if (size.length != 2) throw new IllegalArgumentException("Expected RECTSTART width,height");
+                start(defaultRules(parseNumber(size[0]), parseNumber(size[1])));
+                break;
+            }
+            case "RULES":
+                start(Rules.parse(argument));
+                break;
+            case "RESTART":
+                requireBoard();
+                start(board.getRules());
+                break;
+            case "BEGIN":
+                requireBoard();
+                if (board.getMoveCount() > 0) throw new IllegalStateException("BEGIN on a field with moves");
+                searchMove();
+                break;
+            case "TURN":
+                requireBoard();
+                play(Notation.parseCell(board.getRules(), argument));
+                searchMove();
+                break;
+            case "BOARD":
+                requireBoard();
+                readBoard(in);
+                searchMove();
+                break;
+            case "TAKEBACK": {
+                requireBoard();
+                int cell = Notation.parseCell(board.getRules(), argument);
+                int count = board.getMoveCount();
+                if (count == 0 || moves[count - 1] != cell) {
+                    throw new IllegalArgumentException("TAKEBACK " + argument + " is not the last move");
+                }
+                board.undo(cell);
+                out.println("OK");
+                break;
+            }
+            case "INFO":
+                info(argument);
+                break;
+            case "ABOUT":
+                out.println(ABOUT);
+                break;
+            default:
+                out.println("UNKNOWN " + command);
+                break;
+        }
+    }
+
+    private void start(Rules rules) {
+        if (board == null || !board.getRules().equals(rules)) {
+            board = new Board(rules);
+            moves = new int[rules.getCellCount()];
+            createSearch();
+        } else {
+            board.reset();
+        }
+        out.println("OK");
+    }
+
+    /** The preset of the size if there is one, otherwise five in a row, or the shorter side on smaller fields. */
+    private static Rules defaultRules(int width, int height) {
+        for (Rules preset : Rules.PRESETS) {
+            if (preset.getWidth() == width && preset.getHeight() == height) return preset;
+        }
+        return Rules.of(width, height, Math.min(5, Math.min(width, height)));
+    }
+
+    private void createSearch() {
+        if (search != null) search.close();
+        Rules rules = board.getRules();
+        if (monteCarlo) {
+            search = new MctsSearch();
+        } else {
+            AlphaBetaSearch alphaBeta = new AlphaBetaSearch(20);
+            alphaBeta.setOpeningBook(loadOpeningBook(rules));
+            search = alphaBeta;
+        }
+        search.setThreads(threads);
+    }
+
+    private static OpeningBook loadOpeningBook(Rules rules) {
+        if (!rules.isClassic()) return null;
+        Path file = Paths.get("book" + rules.getWidth() + "x" + rules.getHeight() + ".bin");
+        if (!Files.exists(file)) return null;
+        try (InputStream in = Files.newInputStream(file)) {
+            return OpeningBook.read(in);
+        } catch (IOException e) {
+            System.err.println("Could not read " + file + ": " + e);
+            return null;
+        }
+    }
+
+    private void play(int cell) {
+        if (board.getState() != GameState.PLAYING || !board.isEmpty(cell)) {
+            throw new IllegalArgumentException("Cell " + Notation.cell(board.getRules(), cell) + " is not playable");
+        }
+        moves[board.getMoveCount()] = cell;
+        board.play(cell);
+    }
+
+    /**
+     * Reads {@code x,y,owner} lines up to DONE. The engine is to move, so it is X if both sides have as many
+     * pieces and O if the opponent has one more; the pieces are then played alternately. A position that
+     * cannot be set up this way, with a cell given twice or a line already complete, empties the field.
+     */
+    private void readBoard(BufferedReader in) throws IOException {
+        Rules rules = board.getRules();
+        List<Integer> own = new ArrayList<>();
+        List<Integer> opponent = new ArrayList<>();
+        for (String line = in.readLine(); ; line = in.readLine()) {
+            if (line == null) throw new IllegalStateException("Input ended inside BOARD");
+            line = line.trim();
+            if (line.equalsIgnoreCase("DONE")) break;
+            if (line.isEmpty()) continue;
+            int cell = Notation.parseCell(rules, line);
+            String owner = line.substring(line.lastIndexOf(',') + 1).trim();
+            if (owner.equals("1")) own.add(cell);
+            else if (owner.equals("2")) opponent.add(cell);
+            else throw new IllegalArgumentException("Expected x,y,1 or x,y,2: " + line);
+        }
+        List<Integer> x;
+        List<Integer> o;
+        if (own.size() == opponent.size()) {
+            x = own;
+            o = opponent;
+        } else if (opponent.size() == own.size() + 1) {
+            x = opponent;
+            o = own;
+        } else {
+            board.reset();
+            throw new IllegalArgumentException("Cannot be to move with " + own.size() + " pieces against "
+                + opponent.size());
+        }
+        board.reset();
+        // checked on a copy first, so that a bad position never leaves the field half set up
+        Board check = new Board(rules);
+        for (int i = 0; i < x.size(); i++) {
+            checkPlayable(check, x.get(i));
+            if (i < o.size()) checkPlayable(check, o.get(i));
+        }
+        for (int i = 0; i < x.size(); i++) {
+            play(x.get(i));
+            if (i < o.size()) play(o.get(i));
+        }
+    }
+
+    /** Plays a BOARD piece on the copy; lines only grow, so one complete before the last piece stays complete. */
+    private static void checkPlayable(Board check, int cell) {
+        if (!check.isEmpty(cell)) {
+            throw new IllegalArgumentException("Cell " + Notation.cell(check.getRules(), cell) + " is given twice");
+        }
+        if (check.getState() != GameState.PLAYING || check.play(cell) != GameState.PLAYING) {
+            throw new IllegalArgumentException("The position already has a complete line or a full field");
+        }
+    }
+
+    private void info(String argument) {
+        String[] words = argument.trim().split("\\s+", 2);
+        String key = words[0].toLowerCase(Locale.ROOT);
+        String value = words.length > 1 ? words[1].trim() : "";
+        switch (key) {
+            case "timeout_turn":
+                timeoutTurnMillis = Long.parseLong(value);
+                break;
+            case "timeout_match":
+                timeoutMatchMillis = Long.parseLong(value);
+                break;
+            case "time_left":
+                timeLeftMillis = Long.parseLong(value);
+                break;
+            case "engine":
+                monteCarlo = value.equalsIgnoreCase("mcts");
+                if (board != null) createSearch();
+                break;
+            case "threads":
+                threads = Math.max(1, parseNumber(value));
+                if (search != null) search.setThreads(threads);
+                break;
+            default:
+                // the protocol lets managers send keys the engine does not use
+                break;
+        }
+    }
+
+    private void searchMove() {
+        if (board.getState() != GameState.PLAYING) throw new IllegalStateException("The game is over");
+        long turnMillis = timeoutTurnMillis > 0 ? timeoutTurnMillis : 1;
+        long budgetMillis = turnMillis;
+        if (timeoutMatchMillis > 0 && timeLeftMillis != Long.MAX_VALUE) {
+            int movesToGo = Math.max(MIN_MOVES_TO_GO, (board.getCellCount() - board.getMoveCount() + 1) / 2);
+            budgetMillis = Math.min(budgetMillis, (timeLeftMillis - RESERVE_MILLIS) / movesToGo);
+            turnMillis = Math.min(turnMillis, timeLeftMillis - RESERVE_MILLIS);
+        }
+        search.setTimeBudgetMillis(Math.max(1, budgetMillis));
+        search.setLatencyCapMillis(Math.max(1, turnMillis));
+        Board position = new Board(board);
+        running = searchThread.submit(() -> {
+            int cell = search.chooseMove(position);
+            if (cell < 0) cell = position.nextEmpty(0);
+            SearchStats stats = search.getStats();
+            play(cell);
+            // book moves are scored like searched ones, so both messages can be compared
+            out.println(stats.isFromBook() ? String.format(Locale.ROOT, "MESSAGE book move score %d", stats.getScore())
+                : String.format(Locale.ROOT, "MESSAGE depth %d score %d nodes %d time %d ms", stats.getDepth(),
+                    stats.getScore(), stats.getNodes(), stats.getElapsedNanos() / 1_000_000));
+            out.println(Notation.cell(board.getRules(), cell));
+        });
+    }
+
+    private void awaitSearch() throws InterruptedException {
+        if (running == null) return;
+        try {
+            running.get();
+        } catch (ExecutionException e) {
+            out.println("ERROR " + e.getCause());
+        }
+        running = null;
+    }
+
+    private void requireBoard() {
+        if (board == null) throw new IllegalStateException("No field yet, send START first");
+    }
+
+    private static int parseNumber(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number: " + text);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.itschool.TicTacToe.brain;
+
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.Rules;
+
+import java.util.Map;
+
+/**
+ * Cells and positions as text. A cell is written as Gomocup coordinates, {@code x,y}, the column and the
+ * row counted from 0 at the top left. A position is its rules in the {@link Rules#parse} format without
+ * spaces, then the moves in order separated by spaces, X first: {@code 15x15/5 7,7 8,7 8,8}.
+ */
+final class Notation {
+    private Notation() {
+    }
+
+    static String cell(Rules rules, int cell) {
+        return cell % rules.getWidth() + "," + cell / rules.getWidth();
+    }
+
+    /** Parses the cell in {@code text}, which may be followed by more comma separated fields. */
+    static int parseCell(Rules rules, String text) {
+        int end = text.indexOf(',', text.indexOf(',') + 1);
+        return parseCell(rules, text, 0, end < 0 ? text.length() : end);
+    }
+
+    /**
+     * Parses the cell between {@code start} and {@code end} without allocating, for the batch mode.
+     * @throws IllegalArgumentException if it is not two numbers or is off the field
+     */
+    static int parseCell(Rules rules, String text, int start, int end) {
+        int x = 0;
+        int y = 0;
+        boolean comma = false;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ',' && !comma && digits > 0) {
+                comma = true;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                if (comma) y = y * 10 + c - '0';
+                else x = x * 10 + c - '0';
+                digits++;
+            } else {
+                throw new IllegalArgumentException("Expected a cell like 7,7: " + text.substring(start, end));
+            }
+        }
+        if (!comma || digits == 0) {
+            throw new IllegalArgumentException("Expected a cell like 7,7: " + text.substring(start, end));
+        }
+        if (x >= rules.getWidth() || y >= rules.getHeight()) {
+            throw new IllegalArgumentException("Cell " + x + "," + y + " is off the " + rules.getName() + " field");
+        }
+        return y * rules.getWidth() + x;
+    }
+
+    /**
+     * Plays a position line on the board for its rules, which is created on first use and kept in {@code boards}.
+     * @throws IllegalArgumentException if the rules, a cell or a move is not valid
+     */
+    static Board parsePosition(String line, Map<String, Board> boards) {
+        int end = line.indexOf(' ');
+        String name = end < 0 ? line.trim() : line.substring(0, end);
+        Board board = boards.get(name);
+        if (board == null) {
+            board = new Board(Rules.parse(name));
+            boards.put(name, board);
+        }
+        board.reset();
+        Rules rules = board.getRules();
+        int length = line.length();
+        int start = end < 0 ? length : end + 1;
+        while (start < length) {
+            end = line.indexOf(' ', start);
+            if (end < 0) end = length;
+            if (end > start) {
+                int cell = parseCell(rules, line, start, end);
+                if (!board.isEmpty(cell) || board.getState() != GameState.PLAYING) {
+                    throw new IllegalArgumentException("Move " + line.substring(start, end) + " is not playable");
+                }
+                board.play(cell);
+            }
+            start = end + 1;
+        }
+        return board;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.itschool.TicTacToe.brain;
+
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.RandomPlayer;
+import ru.itschool.TicTacToe.engine.Rules;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Writes a file of random unfinished positions for {@link BatchAnalyzer}, spread evenly over the given
+ * rules, each with a random number of random moves up to half the field. The same seed writes the same file.
+ * <p>
+ * Options: {@code --positions N}, {@code --out FILE}, {@code --rules 3x3,7x7/4,...} (all presets by default)
+ * and {@code --seed N}.
+ */
+public final class PositionGenerator {
+    private PositionGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long positions = 1_000_000;
+        Path outFile = null;
+        String rulesList = null;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--positions": positions = Long.parseLong(value); break;
+                case "--out": outFile = Paths.get(value); break;
+                case "--rules": rulesList = value; break;
+                case "--seed": seed = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (outFile == null) {
+            throw new IllegalArgumentException("Usage: PositionGenerator --out FILE [--positions N] [--rules LIST] [--seed N]");
+        }
+        Board[] boards;
+        if (rulesList == null) {
+            boards = Rules.PRESETS.stream().map(Board::new).toArray(Board[]::new);
+        } else {
+            String[] names = rulesList.split(",");
+            boards = new Board[names.length];
+            for (int i = 0; i < names.length; i++) {
+                boards[i] = new Board(Rules.parse(names[i]));
+            }
+        }
+
+        RandomPlayer player = new RandomPlayer(seed);
+        StringBuilder line = new StringBuilder();
+        if (outFile.getParent() != null) Files.createDirectories(outFile.getParent());
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(outFile, StandardCharsets.UTF_8), 1 << 16)) {
+            for (long position = 0; position < positions; position++) {
+                Board board = boards[(int) (position % boards.length)];
+                Rules rules = board.getRules();
+                board.reset();
+                line.setLength(0);
+                line.append(rules.getName().replace(" ", ""));
+                int plies = (int) ((position * 0x9E3779B97F4A7C15L >>> 17) % (rules.getCellCount() / 2 + 1));
+                for (int ply = 0; ply < plies; ply++) {
+                    int cell = player.chooseMove(board);
+                    if (board.play(cell) != GameState.PLAYING) break;
+                    line.append(' ').append(Notation.cell(rules, cell));
+                }
+                out.write(line.append('\n').toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package ru.itschool.TicTacToe.tools;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Turns images into signed distance fields for the game's distance field shader, which keeps edges sharp
+ * at any scale from a small texture.
+ * <p>
+ * Alpha holds the distance to the shape's outer edge. Red, green and blue hold the distance to the edge of
+ * its fill: for outlined images, such as the font page with white letters in a dark outline, that is the
+ * light part; for solid images it is the same field as alpha, so the shader draws them in one colour.
+ * 0.5 is on the edge, and values reach 0 and 1 at {@code spread} output pixels outside and inside it.
+ * <p>
+ * The source's coverage is upsampled until it has at least {@link #SUPERSAMPLING} pixels per output
+ * pixel and thresholded there, so the antialiasing of the source places the edges to a fraction of a pixel.
+ */
+public final class DistanceFields {
+    private static final int SUPERSAMPLING = 4;
+    private static final float FAR = 1e20f;
+
+    private DistanceFields() {
+    }
+
+    /**
+     * @param size the longer side of the result; the aspect ratio is kept
+     * @param spread the distance in output pixels at which the field saturates
+     * @param outlined whether the colour channels get the field of the light fill instead of the whole shape
+     */
+    public static BufferedImage generate(BufferedImage source, int size, float spread, boolean outlined) {
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        float scale = size / (float) Math.max(sourceWidth, sourceHeight);
+        int width = Math.max(1, Math.round(sourceWidth * scale));
+        int height = Math.max(1, Math.round(sourceHeight * scale));
+        int upsample = Math.max(1, (int) Math.ceil(SUPERSAMPLING * scale));
+
+        float[] shape = new float[sourceWidth * sourceHeight];
+        float[] fill = new float[shape.length];
+        for (int y = 0; y < sourceHeight; y++) {
+            for (int x = 0; x < sourceWidth; x++) {
+                int pixel = source.getRGB(x, y);
+                float alpha = (pixel >>> 24) / 255f;
+                float luminance = (0.3f * ((pixel >> 16) & 0xFF) + 0.59f * ((pixel >> 8) & 0xFF) + 0.11f * (pixel & 0xFF)) / 255f;
+                shape[y * sourceWidth + x] = alpha;
+                fill[y * sourceWidth + x] = alpha * luminance;
+            }
+        }
+
+        int[] shapeField = resample(signedDistance(shape, sourceWidth, sourceHeight, upsample),
+            sourceWidth * upsample, sourceHeight * upsample, width, height, spread);
+        int[] fillField = outlined ? resample(signedDistance(fill, sourceWidth, sourceHeight, upsample),
+            sourceWidth * upsample, sourceHeight * upsample, width, height, spread) : shapeField;
+
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                int colour = fillField[i];
+                result.setRGB(x, y, shapeField[i] << 24 | colour << 16 | colour << 8 | colour);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Thresholds the bilinearly upsampled coverage at one half and returns the signed distance, positive
+     * inside, of every upsampled pixel to the edge, in upsampled pixels.
+     */
+    private static float[] signedDistance(float[] coverage, int width, int height, int upsample) {
+        int highWidth = width * upsample;
+        int highHeight = height * upsample;
+        boolean[] inside = new boolean[highWidth * highHeight];
+        for (int y = 0; y < highHeight; y++) {
+            float sy = (y + 0.5f) / upsample - 0.5f;
+            for (int x = 0; x < highWidth; x++) {
+                float sx = (x + 0.5f) / upsample - 0.5f;
+                inside[y * highWidth + x] = sample(coverage, width, height, sx, sy) >= 0.5f;
+            }
+        }
+        float[] toInside = squaredDistance(inside, true, highWidth, highHeight);
+        float[] toOutside = squaredDistance(inside, false, highWidth, highHeight);
+        float[] distance = new float[inside.length];
+        for (int i = 0; i < distance.length; i++) {
+            // a pixel centre is half a pixel from the edge between it and its neighbour
+            distance[i] = inside[i] ? (float) Math.sqrt(toOutside[i]) - 0.5f : 0.5f - (float) Math.sqrt(toInside[i]);
+        }
+        return distance;
+    }
+
+    /** Samples the field at every output pixel's centre and maps the distance, in output pixels, to 0..255. */
+    private static int[] resample(float[] distance, int highWidth, int highHeight, int width, int height, float spread) {
+        float ratio = highWidth / (float) width;
+        int[] out = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            float hy = (y + 0.5f) * highHeight / height - 0.5f;
+            for (int x = 0; x < width; x++) {
+                float hx = (x + 0.5f) * highWidth / width - 0.5f;
+                float d = sample(distance, highWidth, highHeight, hx, hy) / ratio;
+                float value = Math.max(0f, Math.min(1f, 0.5f + d / (2 * spread)));
+                out[y * width + x] = Math.round(value * 255);
+            }
+        }
+        return out;
+    }
+
+    private static float sample(float[] values, int width, int height, float x, float y) {
+        x = Math.max(0, Math.min(width - 1, x));
+        y = Math.max(0, Math.min(height - 1, y));
+        int x0 = (int) x, y0 = (int) y;
+        int x1 = Math.min(width - 1, x0 + 1), y1 = Math.min(height - 1, y0 + 1);
+        float fx = x - x0, fy = y - y0;
+        float top = values[y0 * width + x0] * (1 - fx) + values[y0 * width + x1] * fx;
+        float bottom = values[y1 * width + x0] * (1 - fx) + values[y1 * width + x1] * fx;
+        return top * (1 - fy) + bottom * fy;
+    }
+
+    /**
+     * Exact squared Euclidean distance of every pixel to the nearest pixel whose {@code inside} flag equals
+     * {@code target}, by Felzenszwalb and Huttenlocher's separable transform: columns first, then rows.
+     */
+    private static float[] squaredDistance(boolean[] inside, boolean target, int width, int height) {
+        float[] grid = new float[width * height];
+        for (int i = 0; i < grid.length; i++) grid[i] = inside[i] == target ? 0 : FAR;
+        int longest = Math.max(width, height);
+        float[] f = new float[longest];
+        float[] d = new float[longest];
+        int[] v = new int[longest];
+        float[] z = new float[longest + 1];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) f[y] = grid[y * width + x];
+            transform(f, height, d, v, z);
+            for (int y = 0; y < height; y++) grid[y * width + x] = d[y];
+        }
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(grid, y * width, f, 0, width);
+            transform(f, width, d, v, z);
+            System.arraycopy(d, 0, grid, y * width, width);
+        }
+        return grid;
+    }
+
+    /** One dimension of the transform: the lower envelope of the parabolas rooted at each sample. */
+    private static void transform(float[] f, int n, float[] d, int[] v, float[] z) {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -Float.MAX_VALUE;
+        z[1] = Float.MAX_VALUE;
+        for (int q = 1; q < n; q++) {
+            float s = intersection(f, q, v[k]);
+            while (s <= z[k]) {
+                k--;
+                s = intersection(f, q, v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Float.MAX_VALUE;
+        }
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) k++;
+            float offset = q - v[k];
+            d[q] = offset * offset + f[v[k]];
+        }
+    }
+
+    private static float intersection(float[] f, int q, int p) {
+        return ((f[q] + (float) q * q) - (f[p] + (float) p * p)) / (2f * q - 2f * p);
+    }
+}
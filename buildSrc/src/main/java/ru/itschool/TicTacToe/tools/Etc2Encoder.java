@@ -0,0 +1,325 @@
+package ru.itschool.TicTacToe.tools;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses images to ETC2 RGBA8 with EAC alpha ({@code GL_COMPRESSED_RGBA8_ETC2_EAC}, 8 bits per pixel)
+ * and writes them as gzipped KTX files with a full mipmap chain, which libGDX loads as a texture on
+ * OpenGL ES 3.0.
+ * <p>
+ * The colour half of each block only uses the individual and differential modes that ETC2 inherits from
+ * ETC1, chosen per block by trying both flips and all intensity tables. That is a fast encoder rather
+ * than a best-quality one, but it needs no external tool and the atlas art is flat shapes and gradients.
+ */
+public final class Etc2Encoder {
+    private static final int GL_COMPRESSED_RGBA8_ETC2_EAC = 0x9278;
+    private static final int GL_RGBA = 0x1908;
+    private static final byte[] KTX_IDENTIFIER = {
+        (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+
+    /** ETC1 intensity modifiers; pixel indices 0..3 select +small, +large, -small, -large. */
+    private static final int[][] COLOR_TABLES = {
+        {2, 8}, {5, 17}, {9, 29}, {13, 42}, {18, 60}, {24, 80}, {33, 106}, {47, 183}};
+
+    private static final int[][] ALPHA_TABLES = {
+        {-3, -6, -9, -15, 2, 5, 8, 14},
+        {-3, -7, -10, -13, 2, 6, 9, 12},
+        {-2, -5, -8, -13, 1, 4, 7, 12},
+        {-2, -4, -6, -13, 1, 3, 5, 12},
+        {-3, -6, -8, -12, 2, 5, 7, 11},
+        {-3, -7, -9, -11, 2, 6, 8, 10},
+        {-4, -7, -8, -11, 3, 6, 7, 10},
+        {-3, -5, -8, -11, 2, 4, 7, 10},
+        {-2, -6, -8, -10, 1, 5, 7, 9},
+        {-2, -5, -8, -10, 1, 4, 7, 9},
+        {-2, -4, -8, -10, 1, 3, 7, 9},
+        {-2, -5, -7, -10, 1, 4, 6, 9},
+        {-3, -4, -7, -10, 2, 3, 6, 9},
+        {-1, -2, -3, -10, 0, 1, 2, 9},
+        {-4, -6, -8, -9, 3, 5, 7, 8},
+        {-3, -5, -7, -9, 2, 4, 6, 8}};
+    /** Table 13 holds a zero modifier at index 4, which encodes a block of one alpha value exactly. */
+    private static final int FLAT_ALPHA_TABLE = 13;
+    private static final int FLAT_ALPHA_INDEX = 4;
+
+    private Etc2Encoder() {
+    }
+
+    /**
+     * Writes {@code image} and its mipmaps down to 1x1 to {@code file} as an ETC2 RGBA8 texture in the
+     * .zktx layout libGDX reads: a gzip stream holding the KTX file's length and then the file.
+     */
+    public static void writeKtx(BufferedImage image, File file) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        int levels = 1;
+        for (int size = Math.max(width, height); size > 1; size >>= 1) levels++;
+
+        long length = KTX_IDENTIFIER.length + 13 * 4;
+        for (int level = 0, w = width, h = height; level < levels; level++, w = Math.max(1, w / 2), h = Math.max(1, h / 2)) {
+            length += 4 + ((w + 3) / 4) * ((h + 3) / 4) * 16L;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt((int) length);
+            out.write(KTX_IDENTIFIER);
+            // KTX stores its header in the writer's byte order and flags it with the endianness field
+            writeInt(out, 0x04030201);
+            writeInt(out, 0); // glType, 0 for compressed data
+            writeInt(out, 1); // glTypeSize
+            writeInt(out, 0); // glFormat, 0 for compressed data
+            writeInt(out, GL_COMPRESSED_RGBA8_ETC2_EAC);
+            writeInt(out, GL_RGBA);
+            writeInt(out, width);
+            writeInt(out, height);
+            writeInt(out, 0); // pixelDepth
+            writeInt(out, 0); // numberOfArrayElements
+            writeInt(out, 1); // numberOfFaces
+            writeInt(out, levels);
+            writeInt(out, 0); // bytesOfKeyValueData
+            for (int level = 0; level < levels; level++) {
+                byte[] data = encode(pixels, width, height);
+                writeInt(out, data.length);
+                out.write(data); // always a multiple of 16 bytes, so no mip padding is needed
+                if (level + 1 < levels) {
+                    pixels = halve(pixels, width, height);
+                    width = Math.max(1, width / 2);
+                    height = Math.max(1, height / 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes ARGB pixels into 16-byte blocks, row by row of 4x4 blocks; edges of sizes that are not
+     * a multiple of 4 repeat the last row or column.
+     */
+    public static byte[] encode(int[] argb, int width, int height) {
+        int blocksX = (width + 3) / 4;
+        int blocksY = (height + 3) / 4;
+        byte[] out = new byte[blocksX * blocksY * 16];
+        int[] block = new int[16];
+        int offset = 0;
+        for (int by = 0; by < blocksY; by++) {
+            for (int bx = 0; bx < blocksX; bx++) {
+                // block[x * 4 + y], the column-major order both halves of a block index pixels in
+                for (int x = 0; x < 4; x++) {
+                    int px = Math.min(bx * 4 + x, width - 1);
+                    for (int y = 0; y < 4; y++) {
+                        int py = Math.min(by * 4 + y, height - 1);
+                        block[x * 4 + y] = argb[py * width + px];
+                    }
+                }
+                putLong(out, offset, encodeAlpha(block));
+                putLong(out, offset + 8, encodeColor(block));
+                offset += 16;
+            }
+        }
+        return out;
+    }
+
+    /** Halves an image with a 2x2 box filter, weighting colours by alpha so transparent pixels do not darken edges. */
+    static int[] halve(int[] argb, int width, int height) {
+        int halfWidth = Math.max(1, width / 2);
+        int halfHeight = Math.max(1, height / 2);
+        int[] out = new int[halfWidth * halfHeight];
+        for (int y = 0; y < halfHeight; y++) {
+            for (int x = 0; x < halfWidth; x++) {
+                int alpha = 0, red = 0, green = 0, blue = 0, plainRed = 0, plainGreen = 0, plainBlue = 0;
+                for (int i = 0; i < 4; i++) {
+                    int sx = Math.min(x * 2 + (i & 1), width - 1);
+                    int sy = Math.min(y * 2 + (i >> 1), height - 1);
+                    int pixel = argb[sy * width + sx];
+                    int a = pixel >>> 24;
+                    int r = (pixel >> 16) & 0xFF, g = (pixel >> 8) & 0xFF, b = pixel & 0xFF;
+                    alpha += a;
+                    red += r * a;
+                    green += g * a;
+                    blue += b * a;
+                    plainRed += r;
+                    plainGreen += g;
+                    plainBlue += b;
+                }
+                int r, g, b;
+                if (alpha == 0) {
+                    r = (plainRed + 2) / 4;
+                    g = (plainGreen + 2) / 4;
+                    b = (plainBlue + 2) / 4;
+                } else {
+                    r = (red + alpha / 2) / alpha;
+                    g = (green + alpha / 2) / alpha;
+                    b = (blue + alpha / 2) / alpha;
+                }
+                out[y * halfWidth + x] = ((alpha + 2) / 4) << 24 | r << 16 | g << 8 | b;
+            }
+        }
+        return out;
+    }
+
+    private static long encodeAlpha(int[] block) {
+        int min = 255, max = 0;
+        for (int pixel : block) {
+            int a = pixel >>> 24;
+            min = Math.min(min, a);
+            max = Math.max(max, a);
+        }
+        if (min == max) {
+            long bits = (long) min << 56 | 1L << 52 | (long) FLAT_ALPHA_TABLE << 48;
+            for (int i = 0; i < 16; i++) bits |= (long) FLAT_ALPHA_INDEX << (45 - 3 * i);
+            return bits;
+        }
+
+        long best = 0;
+        long bestError = Long.MAX_VALUE;
+        for (int table = 0; table < ALPHA_TABLES.length; table++) {
+            int[] modifiers = ALPHA_TABLES[table];
+            int low = modifiers[3];
+            int high = modifiers[7];
+            int idealMultiplier = Math.round((max - min) / (float) (high - low));
+            for (int multiplier = Math.max(1, idealMultiplier - 1); multiplier <= Math.min(15, idealMultiplier + 1); multiplier++) {
+                int centre = Math.round((min + max) / 2f - multiplier * (low + high) / 2f);
+                for (int base = Math.max(0, centre - 1); base <= Math.min(255, centre + 1); base++) {
+                    long bits = (long) base << 56 | (long) multiplier << 52 | (long) table << 48;
+                    long error = 0;
+                    for (int i = 0; i < 16 && error < bestError; i++) {
+                        int a = block[i] >>> 24;
+                        int bestIndex = 0;
+                        int bestPixelError = Integer.MAX_VALUE;
+                        for (int index = 0; index < 8; index++) {
+                            int d = clamp(base + modifiers[index] * multiplier) - a;
+                            if (d * d < bestPixelError) {
+                                bestPixelError = d * d;
+                                bestIndex = index;
+                            }
+                        }
+                        error += bestPixelError;
+                        bits |= (long) bestIndex << (45 - 3 * i);
+                    }
+                    if (error < bestError) {
+                        bestError = error;
+                        best = bits;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static long encodeColor(int[] block) {
+        long best = 0;
+        long bestError = Long.MAX_VALUE;
+        int[] first = new int[3];
+        int[] second = new int[3];
+        for (int flip = 0; flip < 2; flip++) {
+            average(block, flip, 0, first);
+            average(block, flip, 1, second);
+            for (int differential = 0; differential < 2; differential++) {
+                long bits = (long) differential << 33 | (long) flip << 32;
+                int[] base1 = new int[3];
+                int[] base2 = new int[3];
+                for (int c = 0; c < 3; c++) {
+                    int shift = 56 - 8 * c;
+                    if (differential == 1) {
+                        int q1 = quantize(first[c], 31);
+                        int q2 = q1 + Math.max(-4, Math.min(3, quantize(second[c], 31) - q1));
+                        bits |= (long) q1 << (shift + 3) | (long) (q2 - q1 & 7) << shift;
+                        base1[c] = q1 << 3 | q1 >> 2;
+                        base2[c] = q2 << 3 | q2 >> 2;
+                    } else {
+                        int q1 = quantize(first[c], 15);
+                        int q2 = quantize(second[c], 15);
+                        bits |= (long) q1 << (shift + 4) | (long) q2 << shift;
+                        base1[c] = q1 << 4 | q1;
+                        base2[c] = q2 << 4 | q2;
+                    }
+                }
+                long error = 0;
+                for (int half = 0; half < 2 && error < bestError; half++) {
+                    int[] base = half == 0 ? base1 : base2;
+                    long halfBest = Long.MAX_VALUE;
+                    long halfBits = 0;
+                    int halfTable = 0;
+                    for (int table = 0; table < COLOR_TABLES.length; table++) {
+                        long tableError = 0;
+                        long tableBits = 0;
+                        for (int i = 0; i < 16; i++) {
+                            if (half(i, flip) != half) continue;
+                            int pixel = block[i];
+                            int bestIndex = 0;
+                            int bestPixelError = Integer.MAX_VALUE;
+                            for (int index = 0; index < 4; index++) {
+                                int modifier = COLOR_TABLES[table][index & 1] * ((index & 2) == 0 ? 1 : -1);
+                                int dr = clamp(base[0] + modifier) - ((pixel >> 16) & 0xFF);
+                                int dg = clamp(base[1] + modifier) - ((pixel >> 8) & 0xFF);
+                                int db = clamp(base[2] + modifier) - (pixel & 0xFF);
+                                // luma weights, so errors in green cost the most as they do to the eye
+                                int pixelError = 3 * dr * dr + 6 * dg * dg + db * db;
+                                if (pixelError < bestPixelError) {
+                                    bestPixelError = pixelError;
+                                    bestIndex = index;
+                                }
+                            }
+                            tableError += bestPixelError;
+                            tableBits |= (long) (bestIndex >> 1) << (16 + i) | (long) (bestIndex & 1) << i;
+                        }
+                        if (tableError < halfBest) {
+                            halfBest = tableError;
+                            halfBits = tableBits;
+                            halfTable = table;
+                        }
+                    }
+                    error += halfBest;
+                    bits |= halfBits | (long) halfTable << (half == 0 ? 37 : 34);
+                }
+                if (error < bestError) {
+                    bestError = error;
+                    best = bits;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** @return 0 for the left or top half of the block, 1 for the right or bottom half */
+    private static int half(int i, int flip) {
+        return flip == 0 ? i / 8 : (i % 4) / 2;
+    }
+
+    private static void average(int[] block, int flip, int half, int[] rgb) {
+        int r = 0, g = 0, b = 0;
+        for (int i = 0; i < 16; i++) {
+            if (half(i, flip) != half) continue;
+            r += (block[i] >> 16) & 0xFF;
+            g += (block[i] >> 8) & 0xFF;
+            b += block[i] & 0xFF;
+        }
+        rgb[0] = (r + 4) / 8;
+        rgb[1] = (g + 4) / 8;
+        rgb[2] = (b + 4) / 8;
+    }
+
+    private static int quantize(int value, int max) {
+        return (value * max + 127) / 255;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(value, 255);
+    }
+
+    private static void putLong(byte[] out, int offset, long bits) {
+        for (int i = 0; i < 8; i++) out[offset + i] = (byte) (bits >>> (56 - 8 * i));
+    }
+
+    /** KTX readers follow the byte order the endianness field declares; this writes little endian, as ARM and x86 are. */
+    private static void writeInt(DataOutputStream out, int value) throws IOException {
+        out.writeInt(Integer.reverseBytes(value));
+    }
+}
@@ -0,0 +1,169 @@
+package ru.itschool.TicTacToe.tools;
+
+import com.badlogic.gdx.tools.texturepacker.TexturePacker;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Packs one atlas per density bucket from a folder of images, and an ETC2 copy of each for Android.
+ * <p>
+ * The font page, the marks and the field artwork go in as {@link DistanceFields distance fields} of
+ * a fixed size, which stay sharp at any scale. The other images are drawn for a 1080 pixel high screen.
+ * The bucket for height h, {@code name-h.atlas}, holds them shrunk by h / 1080, except {@link #UNSCALED}
+ * ones, so the game can load the smallest
+ * atlas that still has a texel per pixel on the current screen; the full size bucket is plain
+ * {@code name.atlas}. Each also gets {@code name[-h]-etc2.atlas}, listing the same regions on gzipped
+ * {@code .zktx} pages that carry their own mipmaps. The packing settings come from the folder's pack.json.
+ * Keep the heights in step with {@code AtlasVariants.HEIGHTS} in core.
+ */
+public final class TextureBuckets {
+    /** Screen height the raw images are drawn for. */
+    public static final int REFERENCE_HEIGHT = 1080;
+    /** Screen heights of the density buckets. */
+    public static final int[] HEIGHTS = {1080, 720, 540};
+    /** Images that keep their size in every bucket besides the distance fields: the pixel the UI is tinted from. */
+    public static final Set<String> UNSCALED = new HashSet<>(Arrays.asList("white.png"));
+    /**
+     * Images packed as distance fields, by the longer side of the field and its spread in pixels. The font
+     * page keeps its size, as the glyph rectangles in the .fnt file are in its pixels, and its spread stays
+     * within the padding between glyphs; the font draws white letters in a dark outline.
+     */
+    private static final Map<String, DistanceField> DISTANCE_FIELDS = Map.of(
+        "stylo.png", new DistanceField(512, 2, true),
+        "X.png", new DistanceField(128, 4, false),
+        "O.png", new DistanceField(128, 4, false),
+        "board3x3.png", new DistanceField(300, 4, false),
+        "board4x4.png", new DistanceField(300, 4, false),
+        "board5x5.png", new DistanceField(300, 4, false));
+
+    private TextureBuckets() {
+    }
+
+    /**
+     * @param rawFolder the images and pack.json
+     * @param workFolder scratch space for the scaled copies
+     * @param assetsFolder where the atlases and pages are written
+     * @param name the base name of the atlases
+     */
+    public static void pack(File rawFolder, File workFolder, File assetsFolder, String name) throws IOException {
+        File[] images = rawFolder.listFiles((dir, file) -> file.endsWith(".png"));
+        if (images == null || images.length == 0) throw new IOException("No images in " + rawFolder);
+        Arrays.sort(images);
+        Map<String, BufferedImage> fields = new HashMap<>();
+        for (File image : images) {
+            DistanceField field = DISTANCE_FIELDS.get(image.getName());
+            if (field != null) {
+                fields.put(image.getName(), DistanceFields.generate(ImageIO.read(image), field.size, field.spread, field.outlined));
+            }
+        }
+        for (int height : HEIGHTS) {
+            String bucket = bucketName(name, height);
+            float scale = height / (float) REFERENCE_HEIGHT;
+            File scaledFolder = new File(workFolder, bucket);
+            deleteRecursively(scaledFolder);
+            Files.createDirectories(scaledFolder.toPath());
+            Files.copy(new File(rawFolder, "pack.json").toPath(), new File(scaledFolder, "pack.json").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+            for (File image : images) {
+                File target = new File(scaledFolder, image.getName());
+                if (fields.containsKey(image.getName())) {
+                    ImageIO.write(fields.get(image.getName()), "png", target);
+                } else if (height == REFERENCE_HEIGHT || UNSCALED.contains(image.getName())) {
+                    Files.copy(image.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    ImageIO.write(scale(ImageIO.read(image), scale), "png", target);
+                }
+            }
+            TexturePacker.process(scaledFolder.getPath(), assetsFolder.getPath(), bucket);
+            writeEtc2Variant(assetsFolder, bucket);
+        }
+    }
+
+    /** @return the atlas name of the bucket for screens {@code height} pixels high, without extension */
+    public static String bucketName(String name, int height) {
+        return height == REFERENCE_HEIGHT ? name : name + "-" + height;
+    }
+
+    /**
+     * Compresses every page of {@code bucket.atlas} and writes {@code bucket-etc2.atlas} pointing at them.
+     * Its pages are listed with the magnification filter for both filters: the .zktx files already hold
+     * the mipmaps, and a mipmap filter would make the loader generate them, which compressed textures
+     * do not support; the game sets the mipmap filter after loading.
+     */
+    private static void writeEtc2Variant(File assetsFolder, String bucket) throws IOException {
+        List<String> lines = Files.readAllLines(new File(assetsFolder, bucket + ".atlas").toPath(), StandardCharsets.UTF_8);
+        List<String> compressed = lines.stream().map(line -> {
+            if (line.endsWith(".png") && !line.contains(":")) return line.substring(0, line.length() - 4) + ".zktx";
+            if (line.startsWith("filter:")) {
+                String magFilter = line.substring(line.indexOf(',') + 1).trim();
+                return "filter: " + magFilter + ", " + magFilter;
+            }
+            return line;
+        }).collect(Collectors.toList());
+        for (String line : lines) {
+            if (line.endsWith(".png") && !line.contains(":")) {
+                BufferedImage page = ImageIO.read(new File(assetsFolder, line));
+                Etc2Encoder.writeKtx(page, new File(assetsFolder, line.substring(0, line.length() - 4) + ".zktx"));
+            }
+        }
+        Files.write(new File(assetsFolder, bucket + "-etc2.atlas").toPath(), compressed, StandardCharsets.UTF_8);
+    }
+
+    /** Shrinks by halving with bilinear filtering until the last step is at most 2x, then finishes bicubic. */
+    private static BufferedImage scale(BufferedImage image, float scale) {
+        int width = Math.max(1, Math.round(image.getWidth() * scale));
+        int height = Math.max(1, Math.round(image.getHeight() * scale));
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        return draw(current, width, height, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    }
+
+    private static BufferedImage draw(BufferedImage image, int width, int height, Object interpolation) {
+        // drawn premultiplied so that transparent pixels do not bleed their colour into the edges
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    private static final class DistanceField {
+        final int size;
+        final float spread;
+        final boolean outlined;
+
+        DistanceField(int size, float spread, boolean outlined) {
+            this.size = size;
+            this.spread = spread;
+            this.outlined = outlined;
+        }
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursively(child);
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+}
@@ -0,0 +1,77 @@
+package ru.itschool.TicTacToe;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Disposable;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.SearchEngine;
+import ru.itschool.TicTacToe.engine.SearchStats;
+import ru.itschool.TicTacToe.metrics.Metrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs AI searches on a background thread so the render thread never waits for them.
+ * The chosen move is handed back through {@link com.badlogic.gdx.Application#postRunnable(Runnable)};
+ * results of cancelled requests are dropped.
+ */
+class AIWorker implements Disposable {
+    private final SearchEngine search;
+    private final Metrics metrics;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Incremented on every request and cancel; only accessed on the render thread. */
+    private int generation;
+    private boolean thinking;
+
+    AIWorker(SearchEngine search, Metrics metrics) {
+        this.search = search;
+        this.metrics = metrics;
+    }
+
+    /** Starts searching a copy of the board; {@code onMove} is called on the render thread. */
+    void requestMove(Board board, IntConsumer onMove) {
+        cancel();
+        Board position = new Board(board);
+        int request = ++generation;
+        thinking = true;
+        executor.execute(() -> {
+            int cell = search.chooseMove(position);
+            SearchStats stats = search.getStats();
+            Gdx.app.debug("AI", stats.toString());
+            long nodes = stats.getNodes();
+            long thinkNanos = stats.getElapsedNanos();
+            Gdx.app.postRunnable(() -> {
+                if (request != generation) return;
+                thinking = false;
+                metrics.recordAIMove(nodes, thinkNanos);
+                if (cell >= 0) onMove.accept(cell);
+            });
+        });
+    }
+
+    /** Stops the running search, if any, and discards its result. */
+    void cancel() {
+        generation++;
+        if (thinking) {
+            thinking = false;
+            search.stop();
+        }
+    }
+
+    boolean isThinking() {
+        return thinking;
+    }
+
+    @Override
+    public void dispose() {
+        cancel();
+        executor.execute(search::close);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,103 @@
+package ru.itschool.TicTacToe;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.glutils.KTXTextureData;
+
+/**
+ * Picks which of the atlases the packTextures build step writes to load: the smallest density bucket
+ * that still has a texel per pixel on this screen, ETC2 compressed where the GPU is guaranteed to sample
+ * it. The background is drawn for a 1920x1080 screen and the buckets shrink it for smaller ones; the
+ * distance fields of the font, the marks and the fields keep their size in all of them.
+ */
+final class AtlasVariants {
+    /** Screen heights of the buckets, smallest first; keep in step with TextureBuckets in buildSrc. */
+    private static final int[] HEIGHTS = {540, 720, 1080};
+    private static final int REFERENCE_HEIGHT = 1080;
+    private static final int REFERENCE_WIDTH = 1920;
+    /** The mipmap filter pack.json asks for, which the ETC2 atlases cannot declare themselves. */
+    private static final Texture.TextureFilter MIPMAP_FILTER = Texture.TextureFilter.MipMapLinearLinear;
+    /** ETC2 RGBA8 with EAC alpha stores a 4x4 block in 16 bytes. */
+    private static final int ETC2_BITS_PER_PIXEL = 8;
+
+    private AtlasVariants() {
+    }
+
+    /**
+     * @param name the atlas name without bucket or extension
+     * @param width back buffer width in pixels
+     * @param height back buffer height in pixels
+     * @return the file name of the atlas to load
+     */
+    static String choose(String name, int width, int height) {
+        boolean compressed = supportsEtc2();
+        int shortSide = Math.min(width, height);
+        int longSide = Math.max(width, height);
+        for (int bucket : HEIGHTS) {
+            if (bucket < shortSide || bucket * REFERENCE_WIDTH < longSide * REFERENCE_HEIGHT) continue;
+            String fileName = existing(name, bucket, compressed);
+            if (fileName != null) return fileName;
+        }
+        String fileName = existing(name, REFERENCE_HEIGHT, compressed);
+        return fileName != null ? fileName : name + ".atlas";
+    }
+
+    /**
+     * ETC2 is part of OpenGL ES 3.0, so every Android device that gives the game a GL ES 3 context samples it.
+     * Desktop drivers only promise it from OpenGL 4.3, and the desktop has the memory for the PNG pages anyway.
+     */
+    static boolean supportsEtc2() {
+        return Gdx.app.getType() == Application.ApplicationType.Android && Gdx.graphics.isGL30Available();
+    }
+
+    private static String existing(String name, int bucket, boolean compressed) {
+        String base = bucket == REFERENCE_HEIGHT ? name : name + "-" + bucket;
+        if (compressed && Gdx.files.internal(base + "-etc2.atlas").exists()) return base + "-etc2.atlas";
+        return Gdx.files.internal(base + ".atlas").exists() ? base + ".atlas" : null;
+    }
+
+    /**
+     * Gives the compressed pages their mipmap filter. Their files hold the mipmaps, but the ETC2 atlases list
+     * them as linear, as a mipmap filter would make the loader try to generate mipmaps for a compressed texture.
+     */
+    static void useCompressedMipMaps(TextureAtlas atlas) {
+        for (Texture texture : atlas.getTextures()) {
+            if (texture.getTextureData() instanceof KTXTextureData) {
+                texture.setFilter(MIPMAP_FILTER, texture.getMagFilter());
+            }
+        }
+    }
+
+    /** @return the video memory the atlas pages take, with a third more for mipmapped pages */
+    static long textureBytes(TextureAtlas atlas) {
+        long total = 0;
+        for (Texture texture : atlas.getTextures()) {
+            TextureData data = texture.getTextureData();
+            long pixels = (long) texture.getWidth() * texture.getHeight();
+            long bytes = data instanceof KTXTextureData ? pixels * ETC2_BITS_PER_PIXEL / 8
+                : pixels * bytesPerPixel(data.getFormat());
+            total += texture.getMinFilter().isMipMap() ? bytes * 4 / 3 : bytes;
+        }
+        return total;
+    }
+
+    private static int bytesPerPixel(Pixmap.Format format) {
+        switch (format) {
+            case Alpha:
+            case Intensity:
+                return 1;
+            case LuminanceAlpha:
+            case RGB565:
+            case RGBA4444:
+                return 2;
+            case RGB888:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+}
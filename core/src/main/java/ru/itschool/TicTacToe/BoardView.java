@@ -0,0 +1,124 @@
+package ru.itschool.TicTacToe;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.viewport.ScreenViewport;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.Rules;
+
+/**
+ * Lays out a field in the middle of the screen and draws a {@link Board} on it from the shared atlas.
+ * The field artwork and the marks are distance fields, tinted with the colours of the original drawings.
+ */
+class BoardView {
+    private static final Color FIELD_COLOR = new Color(0x0c0c0cff);
+    private static final Color X_COLOR = new Color(0xcc0b0cff);
+    private static final Color O_COLOR = new Color(0x349debff);
+    private final int columns;
+    private final int rows;
+    private final TextureRegion boardRegion;
+    private final TextureRegion pixelRegion;
+    private final TextureRegion xRegion;
+    private final TextureRegion oRegion;
+
+    // Board layout in screen pixels, recomputed only in resize()
+    private final ScreenViewport viewport = new ScreenViewport();
+    private final Rectangle[] cells;
+    private float cellSize;
+    private float boardX;
+    private float boardY;
+    private float boardWidth;
+    private float boardHeight;
+    private final Vector3 touchPos = new Vector3();
+
+    BoardView(Rules rules, TextureAtlas atlas) {
+        this.columns = rules.getWidth();
+        this.rows = rules.getHeight();
+        // larger fields have no artwork; their grid is drawn from the white region
+        boardRegion = columns == rows && columns <= 5 ? atlas.findRegion("board" + columns + "x" + rows) : null;
+        pixelRegion = atlas.findRegion("white");
+        xRegion = atlas.findRegion("X");
+        oRegion = atlas.findRegion("O");
+        cells = new Rectangle[rules.getCellCount()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Rectangle();
+        }
+    }
+
+    void resize(int width, int height) {
+        viewport.update(width, height, true);
+
+        cellSize = Math.min(width / (float)columns, height / (float)rows);
+        boardWidth = cellSize * columns;
+        boardHeight = cellSize * rows;
+        boardX = (width - boardWidth) / 2;
+        boardY = (height - boardHeight) / 2;
+        for (int cell = 0; cell < cells.length; cell++) {
+            int row = cell / columns;
+            int col = cell % columns;
+            cells[cell].set(boardX + col * cellSize, boardY + row * cellSize, cellSize, cellSize);
+        }
+    }
+
+    /**
+     * Draws the field and the pieces on the given cells, which are the occupied cells in move order,
+     * so empty cells are skipped.
+     */
+    void draw(SpriteBatch batch, Board board, int[] placed, int placedCount) {
+        viewport.apply();
+        batch.setProjectionMatrix(viewport.getCamera().combined);
+        batch.begin();
+        if (boardRegion != null) {
+            batch.setColor(FIELD_COLOR);
+            batch.draw(boardRegion, boardX, boardY, boardWidth, boardHeight);
+        } else {
+            drawGrid(batch);
+        }
+
+        float padding = cellSize * 0.1f;
+        for (int i = 0; i < placedCount; i++) {
+            int cell = placed[i];
+            Rectangle bounds = cells[cell];
+            boolean x = board.get(cell) == Board.X;
+            batch.setColor(x ? X_COLOR : O_COLOR);
+            batch.draw(x ? xRegion : oRegion,
+                bounds.x + padding,
+                bounds.y + padding,
+                bounds.width - 2*padding,
+                bounds.height - 2*padding);
+        }
+        batch.setColor(Color.WHITE);
+        batch.end();
+    }
+
+    private void drawGrid(SpriteBatch batch) {
+        float thickness = Math.max(2f, cellSize * 0.04f);
+        batch.setColor(0.8f, 0.8f, 0.8f, 1f);
+        for (int col = 1; col < columns; col++) {
+            batch.draw(pixelRegion, boardX + col * cellSize - thickness / 2, boardY, thickness, boardHeight);
+        }
+        for (int row = 1; row < rows; row++) {
+            batch.draw(pixelRegion, boardX, boardY + row * cellSize - thickness / 2, boardWidth, thickness);
+        }
+        batch.setColor(Color.WHITE);
+    }
+
+    /** @return the cell under a touch in window coordinates, or -1 if the touch is off the field */
+    int cellAt(int screenX, int screenY) {
+        touchPos.set(screenX, screenY, 0);
+        viewport.unproject(touchPos);
+        float x = touchPos.x;
+        float y = touchPos.y;
+        if (x < boardX || x >= boardX + boardWidth || y < boardY || y >= boardY + boardHeight) {
+            return -1;
+        }
+
+        int col = Math.min(columns - 1, (int)((x - boardX) / cellSize));
+        int row = Math.min(rows - 1, (int)((y - boardY) / cellSize));
+        return row * columns + col;
+    }
+}
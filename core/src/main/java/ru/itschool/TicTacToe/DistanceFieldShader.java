@@ -0,0 +1,65 @@
+package ru.itschool.TicTacToe;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+
+/**
+ * The {@link com.badlogic.gdx.graphics.g2d.SpriteBatch} shader for the distance field regions of the atlas:
+ * the font, the marks and the fields. Alpha holds the distance to a shape's outer edge and red the distance
+ * to its fill, and both are cut at 0.5 with a smoothing band one screen pixel wide, so edges stay sharp at
+ * any scale. The fill takes the batch colour and the band between the edges is the font's dark outline;
+ * solid shapes have the same field in both, and fully opaque regions such as the white pixel draw as before.
+ * <p>
+ * The width of the band comes from screen-space derivatives, so differently scaled text and marks share
+ * one batch; GL ES 2 devices without the derivatives extension get a fixed band instead.
+ */
+final class DistanceFieldShader {
+    private static final String VERTEX = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+        + "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+        + "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+        + "uniform mat4 u_projTrans;\n"
+        + "varying vec4 v_color;\n"
+        + "varying vec2 v_texCoords;\n"
+        + "\n"
+        + "void main() {\n"
+        + "    v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+        + "    v_color.a = v_color.a * (255.0 / 254.0);\n"
+        + "    v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+        + "    gl_Position = u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+        + "}\n";
+
+    private static final String FRAGMENT = "#ifdef GL_ES\n"
+        + "#extension GL_OES_standard_derivatives : enable\n"
+        + "precision mediump float;\n"
+        + "#endif\n"
+        + "varying vec4 v_color;\n"
+        + "varying vec2 v_texCoords;\n"
+        + "uniform sampler2D u_texture;\n"
+        + "const vec3 OUTLINE = vec3(0.125);\n"
+        + "\n"
+        + "void main() {\n"
+        + "    vec4 texel = texture2D(u_texture, v_texCoords);\n"
+        + "#if defined(GL_OES_standard_derivatives) || !defined(GL_ES)\n"
+        + "    float smoothing = max(0.7 * fwidth(texel.a), 0.01);\n"
+        + "#else\n"
+        + "    float smoothing = 0.1;\n"
+        + "#endif\n"
+        + "    float shape = smoothstep(0.5 - smoothing, 0.5 + smoothing, texel.a);\n"
+        + "    float fill = smoothstep(0.5 - smoothing, 0.5 + smoothing, texel.r);\n"
+        + "    gl_FragColor = vec4(mix(OUTLINE, v_color.rgb, fill), v_color.a * shape);\n"
+        + "}\n";
+
+    private DistanceFieldShader() {
+    }
+
+    /** @return the compiled shader, or null if this GPU cannot compile it and the batch has to keep its own */
+    static ShaderProgram create() {
+        ShaderProgram shader = new ShaderProgram(VERTEX, FRAGMENT);
+        if (!shader.isCompiled()) {
+            Gdx.app.error("TicTacToe", "Could not compile the distance field shader: " + shader.getLog());
+            shader.dispose();
+            return null;
+        }
+        return shader;
+    }
+}
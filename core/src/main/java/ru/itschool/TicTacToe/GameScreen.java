@@ -1,92 +1,210 @@
 package ru.itschool.TicTacToe;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.InputMultiplexer;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.math.Rectangle;
-import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
+import com.badlogic.gdx.scenes.scene2d.InputListener;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.scenes.scene2d.ui.TextButton;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
+import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
 import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.Scaling;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.viewport.ScalingViewport;
+import ru.itschool.TicTacToe.engine.AlphaBetaSearch;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.Difficulty;
+import ru.itschool.TicTacToe.engine.GameRecord;
+import ru.itschool.TicTacToe.engine.GameSnapshot;
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.MctsSearch;
+import ru.itschool.TicTacToe.engine.Rules;
+import ru.itschool.TicTacToe.engine.SearchEngine;
+import ru.itschool.TicTacToe.net.GameClient;
+import ru.itschool.TicTacToe.net.Protocol;
+
+import java.io.IOException;
+import java.util.function.IntConsumer;
 
 public class GameScreen implements Screen {
     private final TicTacToeGame game;
     private final boolean vsAI;
-    private final int fieldSize;
+    /** Level of the AI opponent, null in hotseat and online games. */
+    private final Difficulty difficulty;
+    private final Rules rules;
+    /** The AI plays Monte Carlo tree search, which a resumed game has to keep. */
+    private final boolean monteCarlo;
 
-    private Texture boardTexture;
-    private Texture xTexture;
-    private Texture oTexture;
+    private TextureRegion pixelRegion;
     private SpriteBatch batch;
-    private char[][] board;
-    private char currentPlayer;
-    private Rectangle[][] cells;
-    private GameState gameState;
+    private BoardView boardView;
+    private final Board board;
+    private final GameRecord record = new GameRecord();
+    private final AIWorker aiWorker;
+    private final IntConsumer aiMoveCallback = this::applyMove;
+
+    /**
+     * Connection to the game server in online games, null otherwise. Online, a touch only sends the move;
+     * the board changes when the server relays it, so both players' boards follow the server's.
+     */
+    private final GameClient client;
+    /** This player's side once the server has started a match, {@link Board#EMPTY} before that. */
+    private int localSide = Board.EMPTY;
+    /** Side of the last online match, kept after it ends so its result is counted for the right player. */
+    private int matchSide = Board.EMPTY;
+    /** A move was sent and the server has not relayed it yet. */
+    private boolean moveSent;
+    private boolean disposed;
+
+    /**
+     * Occupied cells in move order, so rendering skips empty cells. The {@link #redoCount} cells after
+     * {@link #placedCount} are taken-back moves that redo plays again.
+     */
+    private final int[] placed;
+    private int placedCount;
+    private int redoCount;
 
     private Stage uiStage;
     private BitmapFont font;
     private Label statusLabel;
     private TextButton restartButton;
     private TextButton menuButton;
+    private TextButton undoButton;
+    private TextButton redoButton;
+    private MetricsOverlay metricsOverlay;
 
-    public GameScreen(TicTacToeGame game, boolean vsAI, int fieldSize) {
+    /** @param difficulty level of the AI opponent, or null for two players on this device */
+    public GameScreen(TicTacToeGame game, Difficulty difficulty, Rules rules) {
+        this(game, difficulty, rules, game.isMonteCarloAI(), null);
+    }
+
+    /** Resumes a game saved when the app was paused, with its AI, moves and redo moves. */
+    public GameScreen(TicTacToeGame game, GameSnapshot snapshot) {
+        this(game, snapshot.getDifficulty(), snapshot.getRules(), snapshot.isMonteCarlo(), null);
+        record.start(rules, snapshot.getMode(), snapshot.getStartMillis());
+        for (int ply = 0; ply < snapshot.getMoveCount(); ply++) {
+            placeMove(snapshot.getCell(ply));
+        }
+        redoCount = snapshot.getRedoCount();
+        for (int i = 0; i < redoCount; i++) {
+            placed[placedCount + i] = snapshot.getCell(placedCount + i);
+        }
+    }
+
+    /**
+     * Online game against whoever the server pairs this player with.
+     * @param serverAddress {@code host} or {@code host:port}
+     * @throws IllegalArgumentException if the address has a malformed port
+     */
+    public GameScreen(TicTacToeGame game, Rules rules, String serverAddress) {
+        this(game, null, rules, false, serverAddress);
+    }
+
+    private GameScreen(TicTacToeGame game, Difficulty difficulty, Rules rules, boolean monteCarlo,
+                       String serverAddress) {
         this.game = game;
-        this.vsAI = vsAI;
-        this.fieldSize = fieldSize;
-        resetGame();
+        this.vsAI = difficulty != null;
+        this.difficulty = difficulty;
+        this.rules = rules;
+        this.board = new Board(rules);
+        this.placed = new int[rules.getCellCount()];
+
+        SearchEngine search;
+        if (difficulty != null && monteCarlo && rules.getCellCount() >= MctsSearch.MIN_CELLS) {
+            MctsSearch mcts = new MctsSearch();
+            difficulty.configure(mcts);
+            search = mcts;
+        } else {
+            AlphaBetaSearch alphaBeta = new AlphaBetaSearch();
+            if (difficulty != null) {
+                difficulty.configure(alphaBeta);
+                if (difficulty.usesOpeningBook()) alphaBeta.setOpeningBook(game.getOpeningBook(rules));
+            }
+            search = alphaBeta;
+        }
+        this.monteCarlo = search instanceof MctsSearch;
+        search.setLatencyCapMillis(game.getAILatencyCapMillis());
+        if (rules.getCellCount() >= 25) {
+            search.setThreads(Runtime.getRuntime().availableProcessors());
+        }
+        this.aiWorker = new AIWorker(search, game.getMetrics());
+        this.client = serverAddress == null ? null : new GameClient(serverAddress, new ServerListener());
+        int mode = client != null ? GameRecord.MODE_ONLINE : vsAI ? GameRecord.MODE_VS_AI : GameRecord.MODE_HOTSEAT;
+        record.start(rules, mode, TimeUtils.millis());
     }
 
     private void resetGame() {
-        this.board = new char[fieldSize][fieldSize];
-        this.cells = new Rectangle[fieldSize][fieldSize];
-        this.currentPlayer = 'X';
-        this.gameState = GameState.PLAYING;
+        aiWorker.cancel();
+        saveRecord();
+        board.reset();
+        placedCount = 0;
+        redoCount = 0;
+        record.start(rules, record.getMode(), TimeUtils.millis());
+        if (client != null) {
+            // a new match, possibly against someone else
+            localSide = Board.EMPTY;
+            moveSent = false;
+            statusLabel.setText("Waiting for an opponent...");
+            client.join(rules);
+        }
     }
 
-    @Override
-    public void show() {
-        switch(fieldSize) {
-            case 3: boardTexture = new Texture(Gdx.files.internal("board3x3.png")); break;
-            case 4: boardTexture = new Texture(Gdx.files.internal("board4x4.png")); break;
-            case 5: boardTexture = new Texture(Gdx.files.internal("board5x5.png")); break;
-            default: boardTexture = new Texture(Gdx.files.internal("board3x3.png"));
+    /**
+     * Logs the game as it stands and counts it in the stats if it was finished. Games are saved when they
+     * are left rather than when they end, so a finished game that is taken back and played on counts once.
+     */
+    private void saveRecord() {
+        if (client == null) game.clearSnapshot();
+        if (record.getMoveCount() == 0) return;
+        record.finish(board.getState(), TimeUtils.millis());
+        game.saveGame(record);
+        if (record.getResult() != GameState.PLAYING) {
+            game.recordResult(record, client != null ? matchSide : vsAI ? Board.X : Board.EMPTY);
         }
+        record.start(rules, record.getMode(), TimeUtils.millis());
+    }
 
-        xTexture = new Texture(Gdx.files.internal("X.png"));
-        oTexture = new Texture(Gdx.files.internal("O.png"));
-        font = new BitmapFont(Gdx.files.internal("stylo.fnt"), false);
-
-        batch = new SpriteBatch();
-
-        int boardSize = Math.min(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
-        float cellSize = boardSize / (float)fieldSize;
-        float boardX = (float)(Gdx.graphics.getWidth() - boardSize) / 2;
-        float boardY = (float)(Gdx.graphics.getHeight() - boardSize) / 2;
-
-        for (int row = 0; row < fieldSize; row++) {
-            for (int col = 0; col < fieldSize; col++) {
-                cells[row][col] = new Rectangle(
-                    boardX + col * cellSize,
-                    boardY + row * cellSize,
-                    cellSize,
-                    cellSize
-                );
+    @Override
+    public void show() {
+        // every image of the screen, including the font page, is a region of the one shared atlas
+        boardView = new BoardView(rules, game.getAtlas());
+        pixelRegion = game.getAtlas().findRegion("white");
+        font = game.getFont();
+        batch = game.getBatch();
+
+        // the stage shares the batch, so the board and the UI are drawn from the same texture
+        uiStage = new Stage(new ScalingViewport(Scaling.stretch, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(),
+            new OrthographicCamera()), batch);
+        // the stage gets touches first, so the buttons shadow the board underneath them
+        Gdx.input.setInputProcessor(new InputMultiplexer(uiStage, new InputAdapter() {
+            @Override
+            public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+                if (board.getState() != GameState.PLAYING || !isLocalTurn()) return false;
+                int cell = boardView.cellAt(screenX, screenY);
+                if (cell < 0) return false;
+                if (!board.isEmpty(cell)) return true;
+                if (client != null) {
+                    moveSent = true;
+                    client.sendMove(cell);
+                } else {
+                    applyMove(cell);
+                }
+                return true;
             }
-        }
-
-        uiStage = new Stage();
-        Gdx.input.setInputProcessor(uiStage);
+        }));
 
         Label.LabelStyle labelStyle = new Label.LabelStyle(font, Color.WHITE);
         statusLabel = new Label("Turn: X", labelStyle);
@@ -97,6 +215,7 @@ public class GameScreen implements Screen {
         buttonStyle.up = createButtonDrawable(new Color(0.2f, 0.2f, 0.2f, 0.8f));
         buttonStyle.down = createButtonDrawable(new Color(0.3f, 0.3f, 0.3f, 0.9f));
         buttonStyle.over = createButtonDrawable(new Color(0.25f, 0.25f, 0.25f, 0.8f));
+        buttonStyle.disabledFontColor = Color.GRAY;
 
         restartButton = new TextButton("Restart", buttonStyle);
         restartButton.pad(10, 15, 10, 15);
@@ -104,9 +223,7 @@ public class GameScreen implements Screen {
             @Override
             public void clicked(InputEvent event, float x, float y) {
                 resetGame();
-                statusLabel.setText("Turn: X");
-                restartButton.setVisible(false);
-                menuButton.setVisible(false);
+                onPositionChanged();
             }
         });
 
@@ -115,7 +232,26 @@ public class GameScreen implements Screen {
         menuButton.addListener(new ClickListener() {
             @Override
             public void clicked(InputEvent event, float x, float y) {
-                game.setScreen(new MenuScreen(game));
+                aiWorker.cancel();
+                game.showMenu();
+            }
+        });
+
+        undoButton = new TextButton("Undo", buttonStyle);
+        undoButton.pad(10, 15, 10, 15);
+        undoButton.addListener(new ClickListener() {
+            @Override
+            public void clicked(InputEvent event, float x, float y) {
+                undo();
+            }
+        });
+
+        redoButton = new TextButton("Redo", buttonStyle);
+        redoButton.pad(10, 15, 10, 15);
+        redoButton.addListener(new ClickListener() {
+            @Override
+            public void clicked(InputEvent event, float x, float y) {
+                redo();
             }
         });
 
@@ -129,6 +265,12 @@ public class GameScreen implements Screen {
         Table rightPanel = new Table();
         rightPanel.add(statusLabel).right().padBottom(10).row();
 
+        Table historyTable = new Table();
+        historyTable.add(undoButton).padRight(10);
+        historyTable.add(redoButton);
+        // moves cannot be taken back against someone else
+        if (client == null) rightPanel.add(historyTable).right().padBottom(10).row();
+
         Table buttonTable = new Table();
         buttonTable.add(restartButton).padRight(10);
         buttonTable.add(menuButton);
@@ -137,6 +279,59 @@ public class GameScreen implements Screen {
         uiTable.add(rightPanel).right();
 
         uiStage.addActor(uiTable);
+
+        metricsOverlay = new MetricsOverlay(game.getMetrics(), labelStyle);
+        metricsOverlay.setVisible(game.isMetricsOverlayVisible());
+        Table overlayTable = new Table();
+        overlayTable.setFillParent(true);
+        overlayTable.top().left().pad(20);
+        overlayTable.add(metricsOverlay);
+        uiStage.addActor(overlayTable);
+
+        // F3 or a three-finger tap toggles the metrics overlay, F9 writes the metrics to files,
+        // Ctrl+Z and Ctrl+Y undo and redo
+        uiStage.addListener(new InputListener() {
+            @Override
+            public boolean keyDown(InputEvent event, int keycode) {
+                boolean ctrl = Gdx.input.isKeyPressed(Input.Keys.CONTROL_LEFT)
+                    || Gdx.input.isKeyPressed(Input.Keys.CONTROL_RIGHT);
+                if (ctrl && keycode == Input.Keys.Z) {
+                    undo();
+                    return true;
+                }
+                if (ctrl && keycode == Input.Keys.Y) {
+                    redo();
+                    return true;
+                }
+                if (keycode == Input.Keys.F3) {
+                    toggleMetricsOverlay();
+                    return true;
+                }
+                if (keycode == Input.Keys.F9) {
+                    game.exportMetrics();
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public boolean touchDown(InputEvent event, float x, float y, int pointer, int button) {
+                if (pointer == 2) toggleMetricsOverlay();
+                return false;
+            }
+        });
+
+        if (client != null) {
+            statusLabel.setText("Waiting for an opponent...");
+            client.join(rules);
+        }
+        onPositionChanged();
+    }
+
+    private void toggleMetricsOverlay() {
+        boolean visible = !metricsOverlay.isVisible();
+        metricsOverlay.setVisible(visible);
+        game.setMetricsOverlayVisible(visible);
     }
 
     @Override
@@ -144,132 +339,94 @@ public class GameScreen implements Screen {
         Gdx.gl.glClearColor(0.1f, 0.1f, 0.1f, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
-        batch.begin();
-        int boardSize = Math.min(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
-        float boardX = (float)(Gdx.graphics.getWidth() - boardSize) / 2;
-        float boardY = (float)(Gdx.graphics.getHeight() - boardSize) / 2;
-
-        batch.draw(boardTexture, boardX, boardY, boardSize, boardSize);
-
-        float cellSize = boardSize / (float)fieldSize;
-        float padding = cellSize * 0.1f;
-
-        for (int row = 0; row < fieldSize; row++) {
-            for (int col = 0; col < fieldSize; col++) {
-                if (board[row][col] == 'X') {
-                    batch.draw(xTexture,
-                        boardX + col * cellSize + padding,
-                        boardY + row * cellSize + padding,
-                        cellSize - 2*padding,
-                        cellSize - 2*padding);
-                } else if (board[row][col] == 'O') {
-                    batch.draw(oTexture,
-                        boardX + col * cellSize + padding,
-                        boardY + row * cellSize + padding,
-                        cellSize - 2*padding,
-                        cellSize - 2*padding);
-                }
-            }
-        }
-        batch.end();
-
-        if (Gdx.input.justTouched() && gameState == GameState.PLAYING) {
-            Vector3 touchPos = new Vector3(Gdx.input.getX(), Gdx.input.getY(), 0);
-            handleTouch(touchPos);
-        }
-
-        if (vsAI && currentPlayer == 'O' && gameState == GameState.PLAYING) {
-            makeAIMove();
-        }
+        boardView.draw(batch, board, placed, placedCount);
 
         uiStage.act(delta);
         uiStage.draw();
     }
 
-    private void handleTouch(Vector3 touchPos) {
-        int boardSize = Math.min(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
-        float boardX = (float)(Gdx.graphics.getWidth() - boardSize) / 2;
-        float boardY = (float)(Gdx.graphics.getHeight() - boardSize) / 2;
-
-        if (touchPos.x < boardX || touchPos.x > boardX + boardSize ||
-            touchPos.y < boardY || touchPos.y > boardY + boardSize) {
-            return;
-        }
+    private boolean isAITurn() {
+        return vsAI && board.getCurrentPlayer() == Board.O;
+    }
 
-        int col = (int)((touchPos.x - boardX) / (boardSize / (float)fieldSize));
-        int row = fieldSize - 1 - (int)((touchPos.y - boardY) / (boardSize / (float)fieldSize));
+    /** @return whether a touch on the board may play a move now */
+    private boolean isLocalTurn() {
+        if (client != null) return board.getCurrentPlayer() == localSide && !moveSent;
+        return !isAITurn();
+    }
 
-        if (row >= 0 && row < fieldSize && col >= 0 && col < fieldSize && board[row][col] == 0) {
-            board[row][col] = currentPlayer;
-            checkGameState();
-            if (gameState == GameState.PLAYING) {
-                currentPlayer = (currentPlayer == 'X') ? 'O' : 'X';
-                statusLabel.setText("Turn: " + currentPlayer);
-            }
-        }
+    /** Plays a new move from the player or the AI; it replaces whatever could be redone. */
+    private void applyMove(int cell) {
+        redoCount = 0;
+        placeMove(cell);
+        onPositionChanged();
     }
 
-    private void makeAIMove() {
-        for (int row = 0; row < fieldSize; row++) {
-            for (int col = 0; col < fieldSize; col++) {
-                if (board[row][col] == 0) {
-                    board[row][col] = 'O';
-                    currentPlayer = 'X';
-                    statusLabel.setText("Turn: X");
-                    checkGameState();
-                    return;
-                }
-            }
-        }
+    private void placeMove(int cell) {
+        board.play(cell);
+        placed[placedCount++] = cell;
+        record.addMove(cell);
     }
 
-    private boolean checkLine(int startRow, int startCol, int rowDelta, int colDelta, char player) {
-        for (int i = 0; i < fieldSize; i++) {
-            int row = startRow + i * rowDelta;
-            int col = startCol + i * colDelta;
-            if (row < 0 || row >= fieldSize || col < 0 || col >= fieldSize || board[row][col] != player) {
-                return false;
-            }
-        }
-        return true;
+    private void takeBackMove() {
+        board.undo(placed[--placedCount]);
+        record.removeLastMove();
+        redoCount++;
     }
 
-    private void checkGameState() {
-        for (int i = 0; i < fieldSize; i++) {
-            if (checkLine(i, 0, 0, 1, currentPlayer)) {
-                endGame(currentPlayer == 'X' ? GameState.X_WON : GameState.O_WON);
-                return;
-            }
-            if (checkLine(0, i, 1, 0, currentPlayer)) {
-                endGame(currentPlayer == 'X' ? GameState.X_WON : GameState.O_WON);
-                return;
-            }
-        }
+    /**
+     * Takes back the last move. Against the AI it takes back the AI's reply together with the
+     * player's move, so it is the player's turn again.
+     */
+    private void undo() {
+        if (placedCount == 0 || client != null) return;
+        aiWorker.cancel();
+        takeBackMove();
+        if (isAITurn() && placedCount > 0) takeBackMove();
+        onPositionChanged();
+    }
 
-        if (checkLine(0, 0, 1, 1, currentPlayer) ||
-            checkLine(0, fieldSize-1, 1, -1, currentPlayer)) {
-            endGame(currentPlayer == 'X' ? GameState.X_WON : GameState.O_WON);
-            return;
+    /** Plays the last taken-back move again, and against the AI its reply too. */
+    private void redo() {
+        if (redoCount == 0 || client != null) return;
+        aiWorker.cancel();
+        redoCount--;
+        placeMove(placed[placedCount]);
+        if (isAITurn() && redoCount > 0 && board.getState() == GameState.PLAYING) {
+            redoCount--;
+            placeMove(placed[placedCount]);
         }
+        onPositionChanged();
+    }
 
-        boolean isDraw = true;
-        for (int row = 0; row < fieldSize; row++) {
-            for (int col = 0; col < fieldSize; col++) {
-                if (board[row][col] == 0) {
-                    isDraw = false;
-                    break;
-                }
+    private void onPositionChanged() {
+        GameState state = board.getState();
+        // online, nothing is played until the server has paired this player with someone
+        boolean playing = state == GameState.PLAYING && (client == null || localSide != Board.EMPTY);
+        if (client != null && state == GameState.PLAYING) {
+            // before a match the status comes from the connection
+            if (playing) {
+                statusLabel.setText(board.getCurrentPlayer() == localSide
+                    ? "Your turn: " + Board.symbol(localSide) : "Opponent's turn");
             }
-            if (!isDraw) break;
-        }
-
-        if (isDraw) {
-            endGame(GameState.DRAW);
+        } else if (playing) {
+            statusLabel.setText("Turn: " + Board.symbol(board.getCurrentPlayer()));
+            if (isAITurn()) {
+                statusLabel.setText("Thinking...");
+                aiWorker.requestMove(board, aiMoveCallback);
+            }
+        } else {
+            endGame(state);
         }
+        restartButton.setVisible(!playing);
+        menuButton.setVisible(!playing);
+        undoButton.setDisabled(placedCount == 0);
+        redoButton.setDisabled(redoCount == 0);
+        // rendering is not continuous; the AI's move arrives without any input event
+        Gdx.graphics.requestRendering();
     }
 
     private void endGame(GameState state) {
-        gameState = state;
         switch (state) {
             case X_WON:
                 statusLabel.setText("X wins!");
@@ -280,40 +437,123 @@ public class GameScreen implements Screen {
             case DRAW:
                 statusLabel.setText("Draw!");
                 break;
+            default:
+                break;
         }
-        restartButton.setVisible(true);
-        menuButton.setVisible(true);
     }
 
-    private TextureRegionDrawable createButtonDrawable(Color color) {
-        Pixmap pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
-        pixmap.setColor(color);
-        pixmap.fill();
-        Texture texture = new Texture(pixmap);
-        pixmap.dispose();
-        return new TextureRegionDrawable(new TextureRegion(texture));
+    private Drawable createButtonDrawable(Color color) {
+        return new TextureRegionDrawable(pixelRegion).tint(color);
+    }
+
+    /** Hands the connection's events to the render thread; none arrive once the screen is disposed. */
+    private class ServerListener implements GameClient.Listener {
+        @Override
+        public void matchStarted(int side) {
+            post(() -> {
+                saveRecord();
+                board.reset();
+                placedCount = 0;
+                redoCount = 0;
+                record.start(rules, GameRecord.MODE_ONLINE, TimeUtils.millis());
+                localSide = side;
+                matchSide = side;
+                moveSent = false;
+                onPositionChanged();
+            });
+        }
+
+        @Override
+        public void moved(int cell) {
+            post(() -> {
+                moveSent = false;
+                if (board.getState() == GameState.PLAYING && board.isEmpty(cell)) applyMove(cell);
+            });
+        }
+
+        @Override
+        public void opponentLeft() {
+            post(() -> {
+                localSide = Board.EMPTY;
+                statusLabel.setText("Opponent left");
+                onPositionChanged();
+            });
+        }
+
+        @Override
+        public void rejected(int reason) {
+            post(() -> {
+                Gdx.app.error("TicTacToe", "The server rejected a message, reason " + reason);
+                moveSent = false;
+                if (reason == Protocol.REJECT_BAD_RULES) {
+                    statusLabel.setText("The server does not host " + rules.getName());
+                }
+                onPositionChanged();
+            });
+        }
+
+        @Override
+        public void disconnected(IOException cause) {
+            post(() -> {
+                if (cause != null) Gdx.app.error("TicTacToe", "Lost the game server", cause);
+                localSide = Board.EMPTY;
+                moveSent = false;
+                statusLabel.setText(cause != null ? "Could not reach the server" : "Disconnected");
+                onPositionChanged();
+            });
+        }
+
+        private void post(Runnable event) {
+            Gdx.app.postRunnable(() -> {
+                if (!disposed) event.run();
+            });
+        }
     }
 
     @Override
     public void dispose() {
-        batch.dispose();
-        boardTexture.dispose();
-        xTexture.dispose();
-        oTexture.dispose();
-        font.dispose();
+        disposed = true;
+        if (client != null) client.close();
+        aiWorker.dispose();
         uiStage.dispose();
     }
 
     @Override
     public void resize(int width, int height) {
+        boardView.resize(width, height);
         uiStage.getViewport().update(width, height, true);
     }
 
-    @Override public void pause() {}
+    /** Saves the game so it resumes where it is if the app is closed or killed in the background. */
+    @Override
+    public void pause() {
+        saveSnapshot();
+    }
+
     @Override public void resume() {}
-    @Override public void hide() {}
-}
 
-enum GameState {
-    PLAYING, X_WON, O_WON, DRAW
+    @Override
+    public void hide() {
+        aiWorker.cancel();
+        if (game.isExiting() && isResumable()) {
+            // the game resumes on the next launch and is saved to the log once it is left
+            saveSnapshot();
+            return;
+        }
+        saveRecord();
+    }
+
+    /** @return whether this is a local game with moves to resume; online games end with the connection */
+    private boolean isResumable() {
+        return client == null && placedCount + redoCount > 0;
+    }
+
+    private void saveSnapshot() {
+        if (!isResumable()) {
+            if (client == null) game.clearSnapshot();
+            return;
+        }
+        game.saveSnapshot(new GameSnapshot(rules, record.getMode(), difficulty, monteCarlo, record.getStartMillis(),
+            placed, placedCount, redoCount));
+    }
 }
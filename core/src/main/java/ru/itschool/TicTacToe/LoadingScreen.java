@@ -0,0 +1,73 @@
+package ru.itschool.TicTacToe;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.utils.viewport.ScreenViewport;
+
+/**
+ * Shows a progress bar while the {@link AssetManager} loads everything in the background.
+ * It draws with a {@link ShapeRenderer} because the atlas is not available yet.
+ */
+public class LoadingScreen implements Screen {
+    /** Milliseconds per frame the asset manager may block the render thread. */
+    private static final int UPDATE_BUDGET_MILLIS = 10;
+
+    private final TicTacToeGame game;
+    private final AssetManager assets;
+    private final ScreenViewport viewport = new ScreenViewport();
+    private ShapeRenderer shapes;
+
+    public LoadingScreen(TicTacToeGame game) {
+        this.game = game;
+        this.assets = game.getAssets();
+    }
+
+    @Override
+    public void show() {
+        shapes = new ShapeRenderer();
+    }
+
+    @Override
+    public void render(float delta) {
+        if (assets.update(UPDATE_BUDGET_MILLIS)) {
+            game.assetsLoaded();
+            return;
+        }
+        // the game renders on demand, but loading has to keep going until it is done
+        Gdx.graphics.requestRendering();
+
+        Gdx.gl.glClearColor(0.1f, 0.1f, 0.1f, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+        float width = viewport.getWorldWidth() * 0.6f;
+        float height = Math.max(8f, viewport.getWorldHeight() * 0.02f);
+        float x = (viewport.getWorldWidth() - width) / 2;
+        float y = (viewport.getWorldHeight() - height) / 2;
+
+        viewport.apply();
+        shapes.setProjectionMatrix(viewport.getCamera().combined);
+        shapes.begin(ShapeRenderer.ShapeType.Filled);
+        shapes.setColor(0.25f, 0.25f, 0.25f, 1f);
+        shapes.rect(x, y, width, height);
+        shapes.setColor(0.8f, 0.8f, 0.8f, 1f);
+        shapes.rect(x, y, width * assets.getProgress(), height);
+        shapes.end();
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        viewport.update(width, height, true);
+    }
+
+    @Override
+    public void dispose() {
+        if (shapes != null) shapes.dispose();
+    }
+
+    @Override public void pause() {}
+    @Override public void resume() {}
+    @Override public void hide() {}
+}
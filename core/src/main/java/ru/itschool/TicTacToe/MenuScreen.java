@@ -4,44 +4,53 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.*;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
+import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
 import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.Scaling;
+import com.badlogic.gdx.utils.viewport.ScalingViewport;
+import ru.itschool.TicTacToe.engine.Difficulty;
+import ru.itschool.TicTacToe.engine.GameRecord;
+import ru.itschool.TicTacToe.engine.Rules;
 
 public class MenuScreen implements Screen {
     private final TicTacToeGame game;
-    private Stage stage;
-    private BitmapFont titleFont;
-    private BitmapFont buttonFont;
-    private SpriteBatch batch;
-    private Texture backgroundTexture;
-    private Window sizeSelectionWindow;
-
+    private final Stage stage;
+    private final SpriteBatch batch;
+    private final TextureRegion backgroundRegion;
+    private final TextureRegion pixelRegion;
+    private final Window sizeSelectionWindow;
+    private final Cell<Table> windowContent;
+    private final Table sizeTable;
+    private final Table difficultyTable;
+    private final TextButton[] difficultyButtons;
+    private final TextButton monteCarloButton;
+    /** Level picked in the difficulty step of a game against the AI. */
+    private Difficulty chosenDifficulty;
+    private final Table serverRow;
+    private final TextField serverField;
+    private Cell<Table> serverCell;
+
+    /** Builds the whole menu once; the game keeps this screen and shows it again without reloading anything. */
     public MenuScreen(TicTacToeGame game) {
         this.game = game;
-    }
-
-    @Override
-    public void show() {
-        batch = new SpriteBatch();
-        backgroundTexture = new Texture(Gdx.files.internal("background.png"));
+        batch = game.getBatch();
+        TextureAtlas atlas = game.getAtlas();
+        backgroundRegion = atlas.findRegion("background");
+        pixelRegion = atlas.findRegion("white");
+        BitmapFont buttonFont = game.getFont();
 
-        titleFont = new BitmapFont(Gdx.files.internal("stylo.fnt"));
-        buttonFont = new BitmapFont(Gdx.files.internal("stylo.fnt"));
-
-        titleFont.setColor(Color.GRAY);
-        titleFont.getData().setScale(1.5f);
-
-        stage = new Stage();
-        Gdx.input.setInputProcessor(stage);
+        stage = new Stage(new ScalingViewport(Scaling.stretch, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(),
+            new OrthographicCamera()), batch);
 
         TextButton.TextButtonStyle buttonStyle = new TextButton.TextButtonStyle();
         buttonStyle.font = buttonFont;
@@ -52,7 +61,9 @@ public class MenuScreen implements Screen {
         Table mainTable = new Table();
         mainTable.setFillParent(true);
 
-        Label title = new Label("TIC TAC TOE", new Label.LabelStyle(titleFont, Color.GRAY));
+        // the font is shared, so the title is scaled on the label rather than on the font data
+        Label title = new Label("TIC TAC TOE", new Label.LabelStyle(buttonFont, Color.GRAY));
+        title.setFontScale(1.5f);
         mainTable.add(title).padTop(50).row();
 
         Table buttonTable = new Table();
@@ -60,15 +71,26 @@ public class MenuScreen implements Screen {
 
         TextButton pvpButton = new TextButton("2 Players", buttonStyle);
         TextButton aiButton = new TextButton("Play vs AI", buttonStyle);
+        TextButton onlineButton = new TextButton("Online", buttonStyle);
+        TextButton replaysButton = new TextButton("Replays", buttonStyle);
+        TextButton statsButton = new TextButton("Stats", buttonStyle);
         TextButton exitButton = new TextButton("Exit", buttonStyle);
 
         pvpButton.pad(20);
         aiButton.pad(20);
+        onlineButton.pad(20);
+        replaysButton.pad(20);
+        statsButton.pad(20);
         exitButton.pad(20);
 
-        buttonTable.add(pvpButton).padBottom(15).row();
-        buttonTable.add(aiButton).padBottom(15).row();
-        buttonTable.add(exitButton).padTop(20);
+        // two columns, so the menu still fits a landscape phone: game modes on the left
+        buttonTable.defaults().fillX();
+        buttonTable.add(pvpButton).padBottom(15);
+        buttonTable.add(replaysButton).padBottom(15).row();
+        buttonTable.add(aiButton).padBottom(15);
+        buttonTable.add(statsButton).padBottom(15).row();
+        buttonTable.add(onlineButton);
+        buttonTable.add(exitButton);
 
         mainTable.add(buttonTable).expandY().padBottom(50);
 
@@ -84,67 +106,121 @@ public class MenuScreen implements Screen {
         Label sizeLabel = new Label("Choose field size", new Label.LabelStyle(buttonFont, Color.GRAY));
         sizeLabel.setAlignment(Align.center);
 
-        TextButton size3Button = new TextButton("3x3", buttonStyle);
-        TextButton size4Button = new TextButton("4x4", buttonStyle);
-        TextButton size5Button = new TextButton("5x5", buttonStyle);
-
-        size3Button.pad(15);
-        size4Button.pad(15);
-        size5Button.pad(15);
+        sizeTable = new Table();
+        sizeTable.defaults().uniformX().pad(10);
+        sizeTable.add(sizeLabel).colspan(3).padBottom(15).row();
+
+        // only shown for online games; the address of the last one is remembered
+        TextField.TextFieldStyle fieldStyle = new TextField.TextFieldStyle(buttonFont, Color.WHITE,
+            createButtonDrawable(Color.WHITE), createButtonDrawable(new Color(0.4f, 0.4f, 0.8f, 0.8f)),
+            createButtonDrawable(new Color(0.2f, 0.2f, 0.2f, 0.8f)));
+        fieldStyle.cursor.setMinWidth(2);
+        serverField = new TextField("", fieldStyle);
+        serverRow = new Table();
+        serverRow.add(new Label("Server", new Label.LabelStyle(buttonFont, Color.GRAY))).padRight(15);
+        serverRow.add(serverField).width(400);
+        serverCell = sizeTable.add((Table) null).colspan(3).padBottom(15);
+        serverCell.row();
+
+        for (int i = 0; i < Rules.PRESETS.size(); i++) {
+            Rules rules = Rules.PRESETS.get(i);
+            TextButton sizeButton = new TextButton(rules.getName(), buttonStyle);
+            sizeButton.pad(15);
+            sizeButton.addListener(new ClickListener() {
+                @Override
+                public void clicked(InputEvent event, float x, float y) {
+                    startGame(rules, (Integer) sizeSelectionWindow.getUserObject());
+                }
+            });
+            Cell<TextButton> cell = sizeTable.add(sizeButton);
+            if (i % 3 == 2) {
+                cell.row();
+            } else {
+                cell.padRight(15);
+            }
+        }
+
+        // against the AI the window first asks for the level; the last one played is highlighted
+        TextButton.TextButtonStyle levelStyle = new TextButton.TextButtonStyle(buttonStyle);
+        levelStyle.checked = createButtonDrawable(new Color(0.3f, 0.3f, 0.5f, 0.9f));
+        Label difficultyLabel = new Label("Choose difficulty", new Label.LabelStyle(buttonFont, Color.GRAY));
+        difficultyLabel.setAlignment(Align.center);
+        difficultyTable = new Table();
+        difficultyTable.defaults().uniformX().fillX().pad(10);
+        difficultyTable.add(difficultyLabel).colspan(2).padBottom(15).row();
+        Difficulty[] levels = Difficulty.values();
+        difficultyButtons = new TextButton[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            Difficulty level = levels[i];
+            TextButton levelButton = new TextButton(level.getLabel(), levelStyle);
+            levelButton.pad(15);
+            levelButton.addListener(new ClickListener() {
+                @Override
+                public void clicked(InputEvent event, float x, float y) {
+                    chosenDifficulty = level;
+                    showWindowContent(sizeTable);
+                }
+            });
+            difficultyButtons[i] = levelButton;
+            Cell<TextButton> cell = difficultyTable.add(levelButton);
+            if (i % 2 == 1) {
+                cell.row();
+            } else {
+                cell.padRight(15);
+            }
+        }
+        // a toggle: the Button flips its checked state on every click
+        monteCarloButton = new TextButton("Monte Carlo AI on 7x7 and up", levelStyle);
+        monteCarloButton.pad(15);
+        monteCarloButton.addListener(new ClickListener() {
+            @Override
+            public void clicked(InputEvent event, float x, float y) {
+                game.setMonteCarloAI(monteCarloButton.isChecked());
+            }
+        });
+        difficultyTable.add(monteCarloButton).colspan(2).padTop(15);
 
-        Table windowTable = new Table();
-        windowTable.defaults().uniformX().pad(10);
-        windowTable.add(sizeLabel).colspan(3).padBottom(15).row();
-        windowTable.add(size3Button).padRight(15);
-        windowTable.add(size4Button).padRight(15);
-        windowTable.add(size5Button);
-
-        sizeSelectionWindow.add(windowTable).pad(20);
-        sizeSelectionWindow.pack();
-        sizeSelectionWindow.setPosition(
-            (float) Gdx.graphics.getWidth() /2 - sizeSelectionWindow.getWidth()/2,
-            (float) Gdx.graphics.getHeight() /2 - sizeSelectionWindow.getHeight()/2
-        );
+        windowContent = sizeSelectionWindow.add((Table) null).pad(20);
 
         pvpButton.addListener(new ClickListener() {
             @Override
             public void clicked(InputEvent event, float x, float y) {
-                showSizeSelectionWindow(false);
+                showSizeSelectionWindow(GameRecord.MODE_HOTSEAT);
             }
         });
 
         aiButton.addListener(new ClickListener() {
             @Override
             public void clicked(InputEvent event, float x, float y) {
-                showSizeSelectionWindow(true);
+                showSizeSelectionWindow(GameRecord.MODE_VS_AI);
             }
         });
 
-        exitButton.addListener(new ClickListener() {
+        onlineButton.addListener(new ClickListener() {
             @Override
             public void clicked(InputEvent event, float x, float y) {
-                Gdx.app.exit();
+                showSizeSelectionWindow(GameRecord.MODE_ONLINE);
             }
         });
 
-        size3Button.addListener(new ClickListener() {
+        replaysButton.addListener(new ClickListener() {
             @Override
             public void clicked(InputEvent event, float x, float y) {
-                startGame(3, sizeSelectionWindow.getUserObject() == Boolean.TRUE);
+                game.showReplays();
             }
         });
 
-        size4Button.addListener(new ClickListener() {
+        statsButton.addListener(new ClickListener() {
             @Override
             public void clicked(InputEvent event, float x, float y) {
-                startGame(4, sizeSelectionWindow.getUserObject() == Boolean.TRUE);
+                game.showStats();
             }
         });
 
-        size5Button.addListener(new ClickListener() {
+        exitButton.addListener(new ClickListener() {
             @Override
             public void clicked(InputEvent event, float x, float y) {
-                startGame(5, sizeSelectionWindow.getUserObject() == Boolean.TRUE);
+                Gdx.app.exit();
             }
         });
 
@@ -152,24 +228,57 @@ public class MenuScreen implements Screen {
         stage.addActor(sizeSelectionWindow);
     }
 
-    private void showSizeSelectionWindow(boolean vsAI) {
-        sizeSelectionWindow.setUserObject(vsAI);
+    @Override
+    public void show() {
+        sizeSelectionWindow.setVisible(false);
+        Gdx.input.setInputProcessor(stage);
+    }
+
+    /** @param mode one of the {@code GameRecord.MODE_} constants */
+    private void showSizeSelectionWindow(int mode) {
+        sizeSelectionWindow.setUserObject(mode);
+        boolean online = mode == GameRecord.MODE_ONLINE;
+        serverCell.setActor(online ? serverRow : null);
+        if (online) {
+            serverField.setText(game.getServerAddress());
+            stage.setKeyboardFocus(serverField);
+        }
+        if (mode == GameRecord.MODE_VS_AI) {
+            Difficulty last = game.getDifficulty();
+            for (int i = 0; i < difficultyButtons.length; i++) {
+                difficultyButtons[i].setChecked(i == last.ordinal());
+            }
+            monteCarloButton.setChecked(game.isMonteCarloAI());
+            showWindowContent(difficultyTable);
+        } else {
+            showWindowContent(sizeTable);
+        }
+    }
+
+    private void showWindowContent(Table content) {
+        windowContent.setActor(content);
+        sizeSelectionWindow.pack();
+        sizeSelectionWindow.setPosition(
+            stage.getWidth() / 2 - sizeSelectionWindow.getWidth() / 2,
+            stage.getHeight() / 2 - sizeSelectionWindow.getHeight() / 2
+        );
         sizeSelectionWindow.setVisible(true);
         sizeSelectionWindow.toFront();
     }
 
-    private void startGame(int fieldSize, boolean vsAI) {
+    private void startGame(Rules rules, int mode) {
+        String address = serverField.getText().trim();
+        if (mode == GameRecord.MODE_ONLINE && address.isEmpty()) return;
         sizeSelectionWindow.setVisible(false);
-        game.setScreen(new GameScreen(game, vsAI, fieldSize));
+        if (mode == GameRecord.MODE_ONLINE) {
+            game.startOnlineGame(rules, address);
+        } else {
+            game.startGame(rules, mode == GameRecord.MODE_VS_AI ? chosenDifficulty : null);
+        }
     }
 
-    private TextureRegionDrawable createButtonDrawable(Color color) {
-        Pixmap pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
-        pixmap.setColor(color);
-        pixmap.fill();
-        Texture texture = new Texture(pixmap);
-        pixmap.dispose();
-        return new TextureRegionDrawable(new TextureRegion(texture));
+    private Drawable createButtonDrawable(Color color) {
+        return new TextureRegionDrawable(pixelRegion).tint(color);
     }
 
     @Override
@@ -177,9 +286,14 @@ public class MenuScreen implements Screen {
         Gdx.gl.glClearColor(0.1f, 0.1f, 0.1f, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
+        stage.getViewport().apply();
+        batch.setProjectionMatrix(stage.getCamera().combined);
+        // the background is the one plain image in the atlas; the stage is drawn from distance fields
+        batch.setShader(null);
         batch.begin();
-        batch.draw(backgroundTexture, 0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        batch.draw(backgroundRegion, 0, 0, stage.getWidth(), stage.getHeight());
         batch.end();
+        batch.setShader(game.getDistanceFieldShader());
 
         stage.act(delta);
         stage.draw();
@@ -193,10 +307,6 @@ public class MenuScreen implements Screen {
     @Override
     public void dispose() {
         stage.dispose();
-        titleFont.dispose();
-        buttonFont.dispose();
-        batch.dispose();
-        backgroundTexture.dispose();
     }
 
     @Override public void pause() {}
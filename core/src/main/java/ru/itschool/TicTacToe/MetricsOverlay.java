@@ -0,0 +1,56 @@
+package ru.itschool.TicTacToe;
+
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import ru.itschool.TicTacToe.metrics.Metrics;
+
+/** A label that shows the current {@link Metrics}, refreshed a few times a second while visible. */
+class MetricsOverlay extends Label {
+    private static final float REFRESH_SECONDS = 0.25f;
+
+    private final Metrics metrics;
+    private final StringBuilder text = new StringBuilder(256);
+    private float sinceRefresh = REFRESH_SECONDS;
+
+    MetricsOverlay(Metrics metrics, LabelStyle style) {
+        super("", style);
+        this.metrics = metrics;
+        setFontScale(0.5f);
+    }
+
+    @Override
+    public void act(float delta) {
+        super.act(delta);
+        if (!isVisible()) return;
+        sinceRefresh += delta;
+        if (sinceRefresh < REFRESH_SECONDS) return;
+        sinceRefresh = 0;
+
+        text.setLength(0);
+        text.append("frame ms  p50 ");
+        appendMillis(metrics.getFrameTimePercentile(0.50));
+        text.append("  p95 ");
+        appendMillis(metrics.getFrameTimePercentile(0.95));
+        text.append("  p99 ");
+        appendMillis(metrics.getFrameTimePercentile(0.99));
+        text.append("\ndraw calls ").append(metrics.getDrawCalls())
+            .append("  binds ").append(metrics.getTextureBindings())
+            .append("  batch flushes ").append(metrics.getRenderCalls());
+        text.append("\nheap ").append(metrics.getHeapUsedBytes() >> 20)
+            .append(" / ").append(metrics.getHeapMaxBytes() >> 20).append(" MB")
+            .append("  textures ").append(metrics.getTextureBytes() >> 20).append(" MB");
+        if (metrics.getGcCount() >= 0) {
+            text.append("  gc ").append(metrics.getGcCount())
+                .append(" (").append(metrics.getGcTimeMillis()).append(" ms)");
+        }
+        text.append("\nAI last move ").append(metrics.getLastAIMoveNodes()).append(" nodes, ");
+        appendMillis(metrics.getLastAIMoveNanos() / 1_000_000f);
+        text.append(" ms");
+        setText(text);
+    }
+
+    /** Appends with one decimal without going through Float.toString. */
+    private void appendMillis(float millis) {
+        int tenths = Math.round(millis * 10);
+        text.append(tenths / 10).append('.').append(tenths % 10);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.itschool.TicTacToe;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import ru.itschool.TicTacToe.engine.OpeningBook;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Lets the {@link AssetManager} read opening books off the render thread. */
+class OpeningBookLoader extends AsynchronousAssetLoader<OpeningBook, OpeningBookLoader.Parameters> {
+    private OpeningBook book;
+
+    OpeningBookLoader(FileHandleResolver resolver) {
+        super(resolver);
+    }
+
+    @Override
+    public void loadAsync(AssetManager manager, String fileName, FileHandle file, Parameters parameter) {
+        book = null;
+        try (InputStream in = file.read()) {
+            book = OpeningBook.read(in);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not load " + fileName, e);
+        }
+    }
+
+    @Override
+    public OpeningBook loadSync(AssetManager manager, String fileName, FileHandle file, Parameters parameter) {
+        OpeningBook result = book;
+        book = null;
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, Parameters parameter) {
+        return null;
+    }
+
+    static class Parameters extends AssetLoaderParameters<OpeningBook> {
+    }
+}
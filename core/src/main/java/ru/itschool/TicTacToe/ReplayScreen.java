@@ -0,0 +1,265 @@
+package ru.itschool.TicTacToe;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.InputEvent;
+import com.badlogic.gdx.scenes.scene2d.InputListener;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Slider;
+import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.scenes.scene2d.ui.TextButton;
+import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
+import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
+import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
+import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
+import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.Scaling;
+import com.badlogic.gdx.utils.viewport.ScalingViewport;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.GameRecord;
+import ru.itschool.TicTacToe.engine.MoveLogReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.DateFormat;
+import java.util.Date;
+
+/**
+ * Replays the most recent games of the move log. Seeking plays or takes back moves one at a time
+ * from the shown position, so scrubbing never rebuilds the board.
+ */
+public class ReplayScreen implements Screen {
+    /** Games kept from the end of the log. */
+    private static final int MAX_GAMES = 100;
+
+    private final TicTacToeGame game;
+    private final GameRecord[] games = new GameRecord[MAX_GAMES];
+    private int gameCount;
+
+    private int shownGame = -1;
+    private GameRecord record;
+    private Board board;
+    private BoardView boardView;
+    private int[] placed;
+
+    private SpriteBatch batch;
+    private TextureRegion pixelRegion;
+    private Stage uiStage;
+    private Label titleLabel;
+    private Label plyLabel;
+    private Slider plySlider;
+
+    public ReplayScreen(TicTacToeGame game) {
+        this.game = game;
+    }
+
+    /** Streams the whole log and keeps the last {@link #MAX_GAMES} games in a ring. */
+    private void loadGames() {
+        game.flushMoveLog();
+        FileHandle file = game.getMoveLogFile();
+        if (!file.exists()) return;
+        Path path = file.file().toPath();
+        int next = 0;
+        long read = 0;
+        GameRecord scratch = new GameRecord();
+        try (MoveLogReader reader = MoveLogReader.open(path)) {
+            while (reader.next(scratch)) {
+                if (games[next] == null) games[next] = new GameRecord();
+                games[next].copyFrom(scratch);
+                next = (next + 1) % MAX_GAMES;
+                read++;
+            }
+        } catch (IOException e) {
+            // a damaged log still replays the games before the damage
+            Gdx.app.error("TicTacToe", "Could not read all of " + file.path(), e);
+        }
+        gameCount = (int) Math.min(read, MAX_GAMES);
+        if (read > MAX_GAMES) {
+            // rotate the ring so the oldest kept game comes first
+            GameRecord[] ordered = new GameRecord[MAX_GAMES];
+            for (int i = 0; i < MAX_GAMES; i++) {
+                ordered[i] = games[(next + i) % MAX_GAMES];
+            }
+            System.arraycopy(ordered, 0, games, 0, MAX_GAMES);
+        }
+    }
+
+    @Override
+    public void show() {
+        loadGames();
+        batch = game.getBatch();
+        pixelRegion = game.getAtlas().findRegion("white");
+        BitmapFont font = game.getFont();
+
+        uiStage = new Stage(new ScalingViewport(Scaling.stretch, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(),
+            new OrthographicCamera()), batch);
+        Gdx.input.setInputProcessor(uiStage);
+
+        Label.LabelStyle labelStyle = new Label.LabelStyle(font, Color.WHITE);
+        titleLabel = new Label(gameCount == 0 ? "No games yet" : "", labelStyle);
+        titleLabel.setAlignment(Align.right);
+        titleLabel.setFontScale(0.6f);
+        plyLabel = new Label("", labelStyle);
+        plyLabel.setAlignment(Align.right);
+
+        TextButton.TextButtonStyle buttonStyle = new TextButton.TextButtonStyle();
+        buttonStyle.font = font;
+        buttonStyle.up = createButtonDrawable(new Color(0.2f, 0.2f, 0.2f, 0.8f), 0, 0);
+        buttonStyle.down = createButtonDrawable(new Color(0.3f, 0.3f, 0.3f, 0.9f), 0, 0);
+        buttonStyle.over = createButtonDrawable(new Color(0.25f, 0.25f, 0.25f, 0.8f), 0, 0);
+
+        Slider.SliderStyle sliderStyle = new Slider.SliderStyle(
+            createButtonDrawable(new Color(0.3f, 0.3f, 0.3f, 0.8f), 0, 8),
+            createButtonDrawable(new Color(0.8f, 0.8f, 0.8f, 1f), 16, 32));
+        plySlider = new Slider(0, 1, 1, false, sliderStyle);
+        plySlider.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                seek((int) plySlider.getValue());
+            }
+        });
+
+        Table navigation = new Table();
+        navigation.defaults().pad(5);
+        navigation.add(button("<<", buttonStyle, () -> showGame(shownGame - 1)));
+        navigation.add(button("<", buttonStyle, () -> step(-1)));
+        navigation.add(button(">", buttonStyle, () -> step(1)));
+        navigation.add(button(">>", buttonStyle, () -> showGame(shownGame + 1)));
+        navigation.add(button("Menu", buttonStyle, game::showMenu)).padLeft(15);
+
+        Table uiTable = new Table();
+        uiTable.setFillParent(true);
+        uiTable.top().right().pad(20);
+        uiTable.add(titleLabel).right().padBottom(5).row();
+        uiTable.add(plyLabel).right().padBottom(10).row();
+        uiTable.add(plySlider).width(300).right().padBottom(10).row();
+        uiTable.add(navigation).right();
+        uiStage.addActor(uiTable);
+
+        // arrow keys step through moves, up and down switch games
+        uiStage.addListener(new InputListener() {
+            @Override
+            public boolean keyDown(InputEvent event, int keycode) {
+                switch (keycode) {
+                    case Input.Keys.LEFT: step(-1); return true;
+                    case Input.Keys.RIGHT: step(1); return true;
+                    case Input.Keys.UP: showGame(shownGame - 1); return true;
+                    case Input.Keys.DOWN: showGame(shownGame + 1); return true;
+                    default: return false;
+                }
+            }
+        });
+
+        showGame(gameCount - 1);
+    }
+
+    private TextButton button(String text, TextButton.TextButtonStyle style, Runnable action) {
+        TextButton button = new TextButton(text, style);
+        button.pad(10, 15, 10, 15);
+        button.addListener(new ClickListener() {
+            @Override
+            public void clicked(InputEvent event, float x, float y) {
+                action.run();
+            }
+        });
+        return button;
+    }
+
+    /** Shows the final position of a game; the newest game is the last one. */
+    private void showGame(int index) {
+        if (index < 0 || index >= gameCount || index == shownGame) return;
+        shownGame = index;
+        record = games[index];
+        if (board == null || !board.getRules().equals(record.getRules())) {
+            board = new Board(record.getRules());
+            boardView = new BoardView(record.getRules(), game.getAtlas());
+            boardView.resize(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        } else {
+            board.reset();
+        }
+        placed = new int[record.getMoveCount()];
+        for (int ply = 0; ply < placed.length; ply++) {
+            placed[ply] = record.getMove(ply);
+        }
+
+        String mode = record.getMode() == GameRecord.MODE_VS_AI ? "vs AI"
+            : record.getMode() == GameRecord.MODE_ONLINE ? "online" : "2 players";
+        String date = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT)
+            .format(new Date(record.getStartMillis()));
+        titleLabel.setText("Game " + (index + 1) + "/" + gameCount + "  " + record.getRules().getName()
+            + " " + mode + "  " + date);
+        plySlider.setRange(0, Math.max(1, record.getMoveCount()));
+        seek(record.getMoveCount());
+        plySlider.setValue(record.getMoveCount());
+    }
+
+    private void step(int plies) {
+        if (record == null) return;
+        plySlider.setValue(board.getMoveCount() + plies);
+    }
+
+    /** Plays or takes back moves until the board shows the position after {@code ply} moves. */
+    private void seek(int ply) {
+        if (record == null) return;
+        ply = Math.max(0, Math.min(record.getMoveCount(), ply));
+        while (board.getMoveCount() < ply) {
+            board.play(record.getMove(board.getMoveCount()));
+        }
+        while (board.getMoveCount() > ply) {
+            board.undo(record.getMove(board.getMoveCount() - 1));
+        }
+        String result;
+        switch (board.getState()) {
+            case X_WON: result = "X wins!"; break;
+            case O_WON: result = "O wins!"; break;
+            case DRAW: result = "Draw!"; break;
+            default: result = "Turn: " + Board.symbol(board.getCurrentPlayer());
+        }
+        plyLabel.setText("Move " + ply + "/" + record.getMoveCount() + "  " + result);
+    }
+
+    private Drawable createButtonDrawable(Color color, float minWidth, float minHeight) {
+        TextureRegionDrawable drawable = new TextureRegionDrawable(pixelRegion);
+        drawable.setMinWidth(minWidth);
+        drawable.setMinHeight(minHeight);
+        return drawable.tint(color);
+    }
+
+    @Override
+    public void render(float delta) {
+        Gdx.gl.glClearColor(0.1f, 0.1f, 0.1f, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+        if (record != null) {
+            boardView.draw(batch, board, placed, board.getMoveCount());
+        }
+
+        uiStage.act(delta);
+        uiStage.draw();
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        if (boardView != null) boardView.resize(width, height);
+        uiStage.getViewport().update(width, height, true);
+    }
+
+    @Override
+    public void dispose() {
+        uiStage.dispose();
+    }
+
+    @Override public void pause() {}
+    @Override public void resume() {}
+    @Override public void hide() {}
+}
@@ -0,0 +1,124 @@
+package ru.itschool.TicTacToe;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.scenes.scene2d.InputEvent;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.ScrollPane;
+import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.scenes.scene2d.ui.TextButton;
+import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
+import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
+import com.badlogic.gdx.utils.Scaling;
+import com.badlogic.gdx.utils.viewport.ScalingViewport;
+import ru.itschool.TicTacToe.engine.GameRecord;
+import ru.itschool.TicTacToe.engine.GameStats;
+
+import java.util.List;
+
+/**
+ * Lists the stats of every mode and field played, most recent first. Against the AI and online the
+ * results are the player's own; hotseat games show X and O wins instead.
+ */
+public class StatsScreen implements Screen {
+    private static final String[] MODES = {"2 players", "vs AI", "simulated", "online"};
+
+    private final TicTacToeGame game;
+    private Stage stage;
+
+    public StatsScreen(TicTacToeGame game) {
+        this.game = game;
+    }
+
+    @Override
+    public void show() {
+        BitmapFont font = game.getFont();
+        stage = new Stage(new ScalingViewport(Scaling.stretch, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(),
+            new OrthographicCamera()), game.getBatch());
+        Gdx.input.setInputProcessor(stage);
+
+        Label.LabelStyle headerStyle = new Label.LabelStyle(font, Color.GRAY);
+        Label.LabelStyle rowStyle = new Label.LabelStyle(font, Color.WHITE);
+
+        Table rows = new Table();
+        rows.defaults().pad(4, 12, 4, 12).right();
+        for (String header : new String[] {"Mode", "Field", "Games", "Won", "Lost", "Draws", "Streak", "Best", "Fastest"}) {
+            rows.add(label(header, headerStyle));
+        }
+        rows.row();
+
+        List<GameStats> all = game.getStats();
+        for (GameStats stats : all) {
+            boolean hotseat = stats.getMode() == GameRecord.MODE_HOTSEAT;
+            String streak = stats.getStreak() > 0 ? stats.getStreak() + " W"
+                : stats.getStreak() < 0 ? -stats.getStreak() + " L" : "-";
+            rows.add(label(stats.getMode() < MODES.length ? MODES[stats.getMode()] : "other", rowStyle)).left();
+            rows.add(label(stats.getRules().getName(), rowStyle));
+            rows.add(label(String.valueOf(stats.getGames()), rowStyle));
+            // hotseat games have no local player, so they count wins by side
+            rows.add(label(hotseat ? "X " + stats.getXWins() : String.valueOf(stats.getWins()), rowStyle));
+            rows.add(label(hotseat ? "O " + stats.getOWins() : String.valueOf(stats.getLosses()), rowStyle));
+            rows.add(label(String.valueOf(stats.getDraws()), rowStyle));
+            rows.add(label(hotseat ? "-" : streak, rowStyle));
+            rows.add(label(hotseat ? "-" : String.valueOf(stats.getBestStreak()), rowStyle));
+            rows.add(label(stats.getFastestWin() > 0 ? stats.getFastestWin() + " moves" : "-", rowStyle));
+            rows.row();
+        }
+        if (all.isEmpty()) {
+            rows.add(label("No finished games yet", rowStyle)).colspan(9).center();
+        }
+
+        TextButton.TextButtonStyle buttonStyle = new TextButton.TextButtonStyle();
+        buttonStyle.font = font;
+        buttonStyle.up = new TextureRegionDrawable(game.getAtlas().findRegion("white")).tint(new Color(0.2f, 0.2f, 0.2f, 0.8f));
+        buttonStyle.down = new TextureRegionDrawable(game.getAtlas().findRegion("white")).tint(new Color(0.3f, 0.3f, 0.3f, 0.9f));
+        TextButton menuButton = new TextButton("Menu", buttonStyle);
+        menuButton.pad(10, 15, 10, 15);
+        menuButton.addListener(new ClickListener() {
+            @Override
+            public void clicked(InputEvent event, float x, float y) {
+                game.showMenu();
+            }
+        });
+
+        Table root = new Table();
+        root.setFillParent(true);
+        root.pad(20);
+        root.add(new ScrollPane(rows)).expand().fill().row();
+        root.add(menuButton).right().padTop(10);
+        stage.addActor(root);
+    }
+
+    private static Label label(String text, Label.LabelStyle style) {
+        Label label = new Label(text, style);
+        label.setFontScale(0.6f);
+        return label;
+    }
+
+    @Override
+    public void render(float delta) {
+        Gdx.gl.glClearColor(0.1f, 0.1f, 0.1f, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        stage.act(delta);
+        stage.draw();
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        stage.getViewport().update(width, height, true);
+    }
+
+    @Override
+    public void dispose() {
+        stage.dispose();
+    }
+
+    @Override public void pause() {}
+    @Override public void resume() {}
+    @Override public void hide() {}
+}
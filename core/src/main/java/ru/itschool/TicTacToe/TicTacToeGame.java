@@ -1,10 +1,442 @@
 package ru.itschool.TicTacToe;
 
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Game;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.BitmapFontLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.TimeUtils;
+import ru.itschool.TicTacToe.engine.Difficulty;
+import ru.itschool.TicTacToe.engine.GameRecord;
+import ru.itschool.TicTacToe.engine.GameSnapshot;
+import ru.itschool.TicTacToe.engine.GameStats;
+import ru.itschool.TicTacToe.engine.MoveLogWriter;
+import ru.itschool.TicTacToe.engine.OpeningBook;
+import ru.itschool.TicTacToe.engine.Rules;
+import ru.itschool.TicTacToe.engine.SnapshotStore;
+import ru.itschool.TicTacToe.engine.StatsStore;
+import ru.itschool.TicTacToe.metrics.Metrics;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Owns everything the screens share: the {@link AssetManager}, one {@link SpriteBatch} and the menu screen.
+ * Assets are loaded once behind a {@link LoadingScreen}, so switching screens never touches the disk.
+ */
 public class TicTacToeGame extends Game {
+    private static final String ATLAS_NAME = "game";
+    private static final String FONT = "stylo.fnt";
+    private static final int[] BOOK_SIZES = {3, 4};
+    private static final String MOVE_LOG = "games.log";
+    private static final String PREFERENCES = "tictactoe";
+    private static final String SERVER_ADDRESS = "serverAddress";
+    private static final String DIFFICULTY = "difficulty";
+    private static final String MONTE_CARLO = "monteCarlo";
+    /** Keeps the AI's reply within a few frames on phones, where the search also shares the CPU with rendering. */
+    private static final long ANDROID_AI_LATENCY_CAP_MILLIS = 50;
+    private static final long DESKTOP_AI_LATENCY_CAP_MILLIS = 1000;
+
+    private AssetManager assets;
+    /** The density bucket of the atlas {@link AtlasVariants} picked for this screen. */
+    private String atlasFile;
+    private SpriteBatch batch;
+    private ShaderProgram distanceFieldShader;
+    private MenuScreen menuScreen;
+    private MoveLogWriter moveLog;
+    private StatsStore stats;
+    private SnapshotStore snapshots;
+    /** The game that was in progress when the app last closed, shown instead of the menu once loaded. */
+    private GameSnapshot resumedGame;
+    private boolean exiting;
+    private long createTime;
+
+    private final Metrics metrics;
+    private final boolean exportMetricsOnPause;
+    private boolean metricsOverlayVisible;
+    private GLProfiler profiler;
+    private int lastTotalRenderCalls;
+    private float sinceSample;
+
+    public TicTacToeGame() {
+        this(null, false);
+    }
+
+    /**
+     * @param gcSampler platform source of GC totals for the metrics, or null
+     * @param exportMetricsOnPause whether to write the metrics to local files every time the app is paused
+     */
+    public TicTacToeGame(Metrics.GcSampler gcSampler, boolean exportMetricsOnPause) {
+        this.metrics = new Metrics(gcSampler);
+        this.exportMetricsOnPause = exportMetricsOnPause;
+    }
+
     @Override
     public void create() {
-        setScreen(new MenuScreen(this));
+        createTime = TimeUtils.nanoTime();
+        assets = new AssetManager();
+        // lets managed textures be reloaded through the manager after an Android context loss
+        Texture.setAssetManager(assets);
+        assets.setLoader(OpeningBook.class, new OpeningBookLoader(assets.getFileHandleResolver()));
+        assets.setErrorListener((asset, throwable) ->
+            Gdx.app.error("TicTacToe", "Could not load " + asset.fileName, throwable));
+
+        atlasFile = AtlasVariants.choose(ATLAS_NAME, Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight());
+        assets.load(atlasFile, TextureAtlas.class);
+        BitmapFontLoader.BitmapFontParameter fontParameter = new BitmapFontLoader.BitmapFontParameter();
+        fontParameter.atlasName = atlasFile;
+        assets.load(FONT, BitmapFont.class, fontParameter);
+        for (int size : BOOK_SIZES) {
+            String fileName = bookFileName(size);
+            if (Gdx.files.internal(fileName).exists()) {
+                assets.load(fileName, OpeningBook.class);
+            }
+        }
+
+        // the screens are static most of the time, so a frame is only rendered when something changes:
+        // the backends request one on input, and the screens do on AI moves and while loading
+        Gdx.graphics.setContinuousRendering(false);
+        Gdx.graphics.requestRendering();
+
+        try {
+            stats = new StatsStore(getDataFolder().file().toPath(), TicTacToeGame::logError);
+            Gdx.app.debug("TicTacToe", "stats loaded in " + stats.getLoadNanos() / 1000 + " us");
+        } catch (IOException e) {
+            // the game still runs, it just does not keep stats
+            Gdx.app.error("TicTacToe", "Could not load the stats", e);
+        }
+        snapshots = new SnapshotStore(getDataFolder().file().toPath(), TicTacToeGame::logError);
+        long readStart = TimeUtils.nanoTime();
+        try {
+            resumedGame = snapshots.read();
+            if (resumedGame != null) {
+                Gdx.app.debug("TicTacToe", "game snapshot read in " + TimeUtils.timeSinceNanos(readStart) / 1000 + " us");
+            }
+        } catch (IOException e) {
+            Gdx.app.error("TicTacToe", "Could not resume the last game", e);
+            snapshots.clear();
+        }
+
+        batch = new SpriteBatch();
+        // nearly everything is drawn from distance fields, so this is the batch's shader unless a screen swaps it
+        distanceFieldShader = DistanceFieldShader.create();
+        batch.setShader(distanceFieldShader);
+        profiler = new GLProfiler(Gdx.graphics);
+        profiler.enable();
+        setScreen(new LoadingScreen(this));
+    }
+
+    /** Called by the {@link LoadingScreen} once every queued asset is available. */
+    void assetsLoaded() {
+        Gdx.app.debug("TicTacToe", "assets loaded " + TimeUtils.timeSinceNanos(createTime) / 1_000_000 + " ms after create()");
+        TextureAtlas atlas = getAtlas();
+        AtlasVariants.useCompressedMipMaps(atlas);
+        // every screen draws from this one atlas, so it is also the texture memory of each screen
+        metrics.setTextureBytes(AtlasVariants.textureBytes(atlas));
+        Gdx.app.debug("TicTacToe", atlasFile + " for " + Gdx.graphics.getBackBufferWidth() + "x"
+            + Gdx.graphics.getBackBufferHeight() + ", " + metrics.getTextureBytes() / 1024 + " KB of textures");
+        menuScreen = new MenuScreen(this);
+        if (resumedGame != null) {
+            GameScreen screen = new GameScreen(this, resumedGame);
+            resumedGame = null;
+            setScreen(screen);
+        } else {
+            setScreen(menuScreen);
+        }
+    }
+
+    /**
+     * Screens other than the menu are disposed once they are replaced; the dispose is posted
+     * because screens switch from inside their own input handlers.
+     */
+    @Override
+    public void setScreen(Screen screen) {
+        Screen previous = getScreen();
+        long start = TimeUtils.nanoTime();
+        super.setScreen(screen);
+        Gdx.graphics.requestRendering();
+        Gdx.app.debug("TicTacToe", "switched to " + screen.getClass().getSimpleName()
+            + " in " + TimeUtils.timeSinceNanos(start) / 1000 + " us");
+        if (previous != null && previous != menuScreen) {
+            Gdx.app.postRunnable(previous::dispose);
+        }
+    }
+
+    public void showMenu() {
+        setScreen(menuScreen);
+    }
+
+    /** @param difficulty level of the AI opponent, remembered for next time, or null for two players */
+    public void startGame(Rules rules, Difficulty difficulty) {
+        if (difficulty != null) {
+            Preferences preferences = Gdx.app.getPreferences(PREFERENCES);
+            preferences.putString(DIFFICULTY, difficulty.name());
+            preferences.flush();
+        }
+        setScreen(new GameScreen(this, difficulty, rules));
+    }
+
+    /** @return the AI level played last time, or Medium */
+    public Difficulty getDifficulty() {
+        String name = Gdx.app.getPreferences(PREFERENCES).getString(DIFFICULTY, Difficulty.MEDIUM.name());
+        try {
+            return Difficulty.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return Difficulty.MEDIUM;
+        }
+    }
+
+    /** @return whether the AI plays Monte Carlo tree search rather than alpha-beta on fields of 7x7 and up */
+    public boolean isMonteCarloAI() {
+        return Gdx.app.getPreferences(PREFERENCES).getBoolean(MONTE_CARLO, false);
+    }
+
+    public void setMonteCarloAI(boolean monteCarlo) {
+        Preferences preferences = Gdx.app.getPreferences(PREFERENCES);
+        preferences.putBoolean(MONTE_CARLO, monteCarlo);
+        preferences.flush();
+    }
+
+    /** @return the longest an AI move may take on this device, whatever the level */
+    public long getAILatencyCapMillis() {
+        return Gdx.app.getType() == Application.ApplicationType.Android ? ANDROID_AI_LATENCY_CAP_MILLIS
+            : DESKTOP_AI_LATENCY_CAP_MILLIS;
+    }
+
+    /** @param serverAddress {@code host} or {@code host:port} of a game server; remembered for next time */
+    public void startOnlineGame(Rules rules, String serverAddress) {
+        GameScreen screen;
+        try {
+            screen = new GameScreen(this, rules, serverAddress);
+        } catch (IllegalArgumentException e) {
+            Gdx.app.error("TicTacToe", e.getMessage());
+            return;
+        }
+        Preferences preferences = Gdx.app.getPreferences(PREFERENCES);
+        preferences.putString(SERVER_ADDRESS, serverAddress);
+        preferences.flush();
+        setScreen(screen);
+    }
+
+    /** @return the server address used last time, or localhost */
+    public String getServerAddress() {
+        return Gdx.app.getPreferences(PREFERENCES).getString(SERVER_ADDRESS, "localhost");
+    }
+
+    public void showReplays() {
+        setScreen(new ReplayScreen(this));
+    }
+
+    /** Replaces the saved in-progress game without waiting for the disk. */
+    public void saveSnapshot(GameSnapshot snapshot) {
+        snapshots.save(snapshot);
+    }
+
+    /** Forgets the saved in-progress game, so the next launch opens the menu. */
+    public void clearSnapshot() {
+        snapshots.clear();
+    }
+
+    /** @return whether the app is shutting down, so the current screen is hidden for the last time */
+    boolean isExiting() {
+        return exiting;
+    }
+
+    /** Appends a game to the move log; it reaches the file on the next flush, pause or exit. */
+    public void saveGame(GameRecord record) {
+        try {
+            if (moveLog == null) {
+                moveLog = new MoveLogWriter(getMoveLogFile().file().toPath());
+            }
+            moveLog.append(record);
+        } catch (IOException e) {
+            Gdx.app.error("TicTacToe", "Could not save the game to " + getMoveLogFile().path(), e);
+        }
+    }
+
+    /**
+     * Counts a finished game in the stats without waiting for the disk.
+     * @param localSide the side of the player on this device, or {@code Board.EMPTY} for hotseat games
+     */
+    public void recordResult(GameRecord record, int localSide) {
+        if (stats == null) return;
+        stats.record(record.getMode(), record.getRules(), record.getResult(), localSide, record.getMoveCount(),
+            record.getEndMillis());
+    }
+
+    /** @return the stats of every mode and field played, most recent first */
+    public List<GameStats> getStats() {
+        return stats == null ? Collections.emptyList() : stats.getAll();
+    }
+
+    public void showStats() {
+        setScreen(new StatsScreen(this));
+    }
+
+    /** Writes buffered games to the move log so that it can be read. */
+    public void flushMoveLog() {
+        if (moveLog == null) return;
+        try {
+            moveLog.flush();
+        } catch (IOException e) {
+            Gdx.app.error("TicTacToe", "Could not write " + getMoveLogFile().path(), e);
+        }
+    }
+
+    public FileHandle getMoveLogFile() {
+        return getDataFolder().child(MOVE_LOG);
+    }
+
+    /**
+     * @return the folder for files the game writes: the app's files directory on Android and
+     *         ~/tictactoe/ on desktop, where the working directory is the assets folder
+     */
+    public FileHandle getDataFolder() {
+        FileHandle folder = Gdx.app.getType() == Application.ApplicationType.Desktop
+            ? Gdx.files.external("tictactoe") : Gdx.files.local("");
+        folder.mkdirs();
+        return folder;
+    }
+
+    /** Error log for the stores' writer threads, so their failures reach the platform log. */
+    private static void logError(String message, Throwable e) {
+        Gdx.app.error("TicTacToe", message, e);
+    }
+
+    @Override
+    public void render() {
+        super.render();
+        // with everything in one atlas a screen should need one texture and a draw call per batch pass
+        float delta = Gdx.graphics.getDeltaTime();
+        // without continuous rendering the delta includes idle time, which would swamp the percentiles
+        if (Gdx.graphics.isContinuousRendering()) {
+            metrics.recordFrame(delta, profiler.getDrawCalls(), profiler.getTextureBindings(),
+                batch.totalRenderCalls - lastTotalRenderCalls);
+            sinceSample += delta;
+            if (sinceSample >= 1f) {
+                metrics.sample();
+                sinceSample = 0;
+            }
+        }
+        lastTotalRenderCalls = batch.totalRenderCalls;
+        profiler.reset();
+    }
+
+    @Override
+    public void pause() {
+        super.pause();
+        flushMoveLog();
+        if (stats != null) stats.flush();
+        if (exportMetricsOnPause) exportMetrics();
+    }
+
+    /** Writes the metrics to metrics/metrics-&lt;time&gt;.csv and .json in the {@link #getDataFolder() data folder}. */
+    public void exportMetrics() {
+        String name = "metrics-" + TimeUtils.millis();
+        FileHandle folder = getDataFolder().child("metrics");
+        FileHandle csv = folder.child(name + ".csv");
+        FileHandle json = folder.child(name + ".json");
+        try (Writer out = csv.writer(false, "UTF-8")) {
+            metrics.writeCsv(out);
+        } catch (IOException e) {
+            Gdx.app.error("TicTacToe", "Could not write " + csv.path(), e);
+            return;
+        }
+        try (Writer out = json.writer(false, "UTF-8")) {
+            metrics.writeJson(out);
+        } catch (IOException e) {
+            Gdx.app.error("TicTacToe", "Could not write " + json.path(), e);
+            return;
+        }
+        Gdx.app.log("TicTacToe", "metrics written to " + csv.file().getAbsolutePath() + " and .json");
+    }
+
+    @Override
+    public void dispose() {
+        exiting = true;
+        super.dispose();
+        Screen current = getScreen();
+        if (current != null && current != menuScreen) current.dispose();
+        if (menuScreen != null) menuScreen.dispose();
+        batch.dispose();
+        if (distanceFieldShader != null) distanceFieldShader.dispose();
+        assets.dispose();
+        if (moveLog != null) {
+            try {
+                moveLog.close();
+            } catch (IOException e) {
+                Gdx.app.error("TicTacToe", "Could not write " + getMoveLogFile().path(), e);
+            }
+        }
+        if (stats != null) {
+            try {
+                stats.close();
+            } catch (IOException e) {
+                Gdx.app.error("TicTacToe", "Could not write the stats", e);
+            }
+        }
+        snapshots.close();
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /** The overlay setting is kept here so it survives screen changes. */
+    public boolean isMetricsOverlayVisible() {
+        return metricsOverlayVisible;
+    }
+
+    public void setMetricsOverlayVisible(boolean visible) {
+        metricsOverlayVisible = visible;
+        // frame times only mean something while frames are rendered back to back
+        Gdx.graphics.setContinuousRendering(visible);
+    }
+
+    public AssetManager getAssets() {
+        return assets;
+    }
+
+    /** @return the batch every screen draws with, including through its stage; it uses the {@link #getDistanceFieldShader()} */
+    public SpriteBatch getBatch() {
+        return batch;
+    }
+
+    /**
+     * @return the shader for the distance field regions of the atlas, or null where it did not compile;
+     *         regions that are plain images, such as the background, have to be drawn with the batch's default shader
+     */
+    public ShaderProgram getDistanceFieldShader() {
+        return distanceFieldShader;
+    }
+
+    public TextureAtlas getAtlas() {
+        return assets.get(atlasFile, TextureAtlas.class);
+    }
+
+    public BitmapFont getFont() {
+        return assets.get(FONT, BitmapFont.class);
+    }
+
+    /** @return the opening book for the rules, or null if there is none */
+    public OpeningBook getOpeningBook(Rules rules) {
+        if (!rules.isClassic()) return null;
+        String fileName = bookFileName(rules.getWidth());
+        return assets.isLoaded(fileName) ? assets.get(fileName, OpeningBook.class) : null;
+    }
+
+    private static String bookFileName(int fieldSize) {
+        return "book" + fieldSize + "x" + fieldSize + ".bin";
     }
 }
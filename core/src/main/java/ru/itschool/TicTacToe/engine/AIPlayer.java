@@ -0,0 +1,7 @@
+package ru.itschool.TicTacToe.engine;
+
+/** Chooses a move for the side to move on a board that is still being played. */
+public interface AIPlayer {
+    /** @return the cell index to play; the given board is left unchanged */
+    int chooseMove(Board board);
+}
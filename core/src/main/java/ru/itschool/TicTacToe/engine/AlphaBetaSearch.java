@@ -0,0 +1,534 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Negamax search with alpha-beta pruning and iterative deepening within a per-move time budget.
+ * Moves are ordered by the transposition table move, then by history heuristic and the number
+ * of winning windows through the cell. Small boards are searched to the end, so play there is perfect;
+ * on fields of 7x7 and up only empty cells within two cells of a piece are considered.
+ * {@link #stop()} may be called from another thread to end the current search early.
+ * <p>
+ * With more than one thread the search runs Lazy SMP: every thread searches the same root with its
+ * own board and move ordering, and they only share the lock-free {@link TranspositionTable}.
+ * Helpers start at alternating depths and shuffle ties in move ordering, so they fill the table
+ * with results the main thread can use; the main thread alone decides the move.
+ * <p>
+ * Weaker play comes from a depth limit, a shorter time budget and a random margin: the root window
+ * trails the best score so far by the margin, so every root move scoring less than the margin below the
+ * best one gets an exact score, and one of them is played at random. {@link MinimaxCheckReport} checks this.
+ * A latency cap, unlike the time budget, also cuts off the first iteration, so the engine answers
+ * in time even on slow devices and large fields.
+ */
+public final class AlphaBetaSearch implements SearchEngine {
+    public static final int WIN_SCORE = 1_000_000;
+    /** Deepest search the engine supports. */
+    public static final int MAX_PLY = 64;
+    private static final int INFINITY = WIN_SCORE + 1;
+    private static final int MAX_EVALUATION = WIN_SCORE / 2;
+    private static final int NEIGHBOURHOOD_MIN_CELLS = 49;
+
+    private final TranspositionTable table;
+    private final SearchStats stats = new SearchStats();
+    private OpeningBook openingBook;
+    private Rules rules;
+    private int[] cellWeights = new int[0];
+
+    private long timeBudgetMillis = 300;
+    private long latencyCapMillis;
+    private int maxDepth = MAX_PLY;
+    private int threads = 1;
+    private int randomMargin;
+    private final Random random = new Random();
+
+    private Worker[] workers = new Worker[0];
+    private ExecutorService helperPool;
+    private long deadline;
+    private long hardDeadline;
+    private volatile boolean stopRequested;
+    private volatile boolean finished;
+
+    public AlphaBetaSearch() {
+        this(18);
+    }
+
+    /** @param tableSizeLog2 log2 of the transposition table entry count */
+    public AlphaBetaSearch(int tableSizeLog2) {
+        this.table = new TranspositionTable(tableSizeLog2);
+    }
+
+    @Override
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    /**
+     * Sets the longest a move may take, 0 for no cap. The search then returns the best move found so far
+     * even if not a single iteration has completed; the time budget is also cut to the cap.
+     */
+    @Override
+    public void setLatencyCapMillis(long latencyCapMillis) {
+        this.latencyCapMillis = latencyCapMillis;
+    }
+
+    public long getLatencyCapMillis() {
+        return latencyCapMillis;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, Math.min(maxDepth, MAX_PLY));
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Sets how much worse than the best root move, in evaluation points, a move may score and still be
+     * played; one of those moves is chosen at random. 0 always plays the best move, 1 chooses among equally
+     * scored ones. Moves that lose by force never come within the margin of a move that does not.
+     */
+    public void setRandomMargin(int randomMargin) {
+        if (randomMargin < 0 || randomMargin > MAX_EVALUATION / 2) {
+            throw new IllegalArgumentException("Random margin out of range: " + randomMargin);
+        }
+        this.randomMargin = randomMargin;
+    }
+
+    public int getRandomMargin() {
+        return randomMargin;
+    }
+
+    /** Sets the seed of the random margin, for repeatable games. */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /** Sets the number of search threads, including the calling one. */
+    @Override
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        if (threads != this.threads) {
+            close();
+            this.threads = threads;
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /** @param openingBook book to answer from on boards of its size, or null */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    public OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Asks a running {@link #chooseMove(Board)} to return as soon as possible with the best move
+     * of the last completed iteration, or -1 if none has completed yet.
+     */
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /** Statistics of the last {@link #chooseMove(Board)} call, summed over all threads. */
+    @Override
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public int chooseMove(Board position) {
+        if (position.getState() != GameState.PLAYING) {
+            throw new IllegalStateException("Game is already over");
+        }
+        long start = System.nanoTime();
+        if (openingBook != null) {
+            int move = openingBook.findMove(position);
+            if (move >= 0) {
+                stats.reset();
+                stats.fromBook = true;
+                stats.bestMove = move;
+                stats.score = fromBook(openingBook.findScore(position), position);
+                stats.elapsedNanos = System.nanoTime() - start;
+                return move;
+            }
+        }
+        prepare(position.getRules());
+        table.newSearch();
+        // a tenth of the cap is left for unwinding the search and joining the helpers
+        long capNanos = latencyCapMillis * 900_000L;
+        deadline = start + (latencyCapMillis > 0 ? Math.min(timeBudgetMillis * 1_000_000L, capNanos)
+            : timeBudgetMillis * 1_000_000L);
+        hardDeadline = latencyCapMillis > 0 ? start + capNanos : Long.MAX_VALUE;
+        stopRequested = false;
+        finished = false;
+
+        int remaining = position.getCellCount() - position.getMoveCount();
+        int depthLimit = Math.min(maxDepth, remaining);
+        for (Worker worker : workers) {
+            worker.reset(position);
+        }
+        Future<?>[] helpers = new Future<?>[workers.length - 1];
+        for (int i = 1; i < workers.length; i++) {
+            Worker helper = workers[i];
+            helpers[i - 1] = helperPool.submit(() -> helper.iterate(depthLimit));
+        }
+        Worker main = workers[0];
+        main.iterate(depthLimit);
+        finished = true;
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+        }
+
+        stats.reset();
+        stats.depth = main.completedDepth;
+        stats.score = main.score;
+        stats.bestMove = main.bestMove;
+        if (randomMargin > 0 && main.completedDepth > 0) {
+            int pick = main.pickWithinMargin();
+            stats.bestMove = main.completedMoves[pick];
+            stats.score = main.completedScores[pick];
+        }
+        for (Worker worker : workers) {
+            stats.nodes += worker.nodes;
+            stats.ttProbes += worker.ttProbes;
+            stats.ttHits += worker.ttHits;
+            worker.board = null;
+        }
+        stats.elapsedNanos = System.nanoTime() - start;
+        return stats.bestMove;
+    }
+
+    /** Shuts down the helper threads; they are started again by the next search if needed. */
+    @Override
+    public void close() {
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+            helperPool = null;
+        }
+        workers = new Worker[0];
+    }
+
+    private void prepare(Rules newRules) {
+        if (!newRules.equals(rules)) {
+            rules = newRules;
+            cellWeights = new int[newRules.getCellCount()];
+            for (int cell : newRules.windows()) {
+                cellWeights[cell]++;
+            }
+        }
+        if (workers.length != threads) {
+            workers = new Worker[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Worker(i);
+            }
+            if (threads > 1) {
+                helperPool = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                    Thread thread = new Thread(runnable, "search-helper");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    /**
+     * Converts a book score to the search's. {@link OpeningBookGenerator} scores a win as one more than the
+     * empty cells left after the winning move, {@code cellCount + 1 - moveCount}; the search scores a win on
+     * the move {@code ply} plies from the root as {@code WIN_SCORE - ply - 1}.
+     */
+    private static int fromBook(int bookScore, Board position) {
+        if (bookScore == 0) return 0;
+        // the winning move leaves |bookScore| - 1 cells empty, and it is the (ply + 1)th move from here
+        int ply = position.getCellCount() - position.getMoveCount() - Math.abs(bookScore);
+        return bookScore > 0 ? WIN_SCORE - ply - 1 : -(WIN_SCORE - ply - 1);
+    }
+
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_SCORE - MAX_PLY) return score + ply;
+        if (score <= -WIN_SCORE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_SCORE - MAX_PLY) return score - ply;
+        if (score <= -WIN_SCORE + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    /** Search state owned by one thread. */
+    private final class Worker {
+        private final int id;
+        private final int[][] moves = new int[MAX_PLY + 1][Rules.MAX_CELLS];
+        private final int[][] moveScores = new int[MAX_PLY + 1][Rules.MAX_CELLS];
+        private final int[] history = new int[Rules.MAX_CELLS];
+        private final int[] candidateMarks = new int[Rules.MAX_CELLS];
+        private int candidateStamp;
+        /** Root moves of the running iteration are scored in {@code moves[0]} order. */
+        private final int[] rootScores = new int[Rules.MAX_CELLS];
+        private int rootCount;
+        private final int[] completedMoves = new int[Rules.MAX_CELLS];
+        private final int[] completedScores = new int[Rules.MAX_CELLS];
+        private int completedCount;
+
+        private Board board;
+        private boolean stopped;
+        private int rootBestMove;
+        private long nodes;
+        private long ttProbes;
+        private long ttHits;
+        private int completedDepth;
+        private int score;
+        private int bestMove;
+
+        Worker(int id) {
+            this.id = id;
+        }
+
+        void reset(Board position) {
+            board = new Board(position);
+            Arrays.fill(history, 0);
+            stopped = false;
+            nodes = 0;
+            ttProbes = 0;
+            ttHits = 0;
+            completedDepth = 0;
+            completedCount = 0;
+            score = 0;
+            bestMove = -1;
+            rootBestMove = -1;
+        }
+
+        void iterate(int depthLimit) {
+            // helpers skip every other depth so that threads spread over neighbouring iterations
+            for (int depth = 1 + (id & 1); depth <= depthLimit; depth++) {
+                int result = searchRoot(depth);
+                if (stopped) break;
+                completedDepth = depth;
+                score = result;
+                bestMove = rootBestMove;
+                completedCount = rootCount;
+                System.arraycopy(moves[0], 0, completedMoves, 0, rootCount);
+                System.arraycopy(rootScores, 0, completedScores, 0, rootCount);
+                if (result >= WIN_SCORE - MAX_PLY) break;
+            }
+            if (bestMove < 0 && !stopRequested) {
+                // the latency cap ended the first iteration: the best move scored so far, or the first in order
+                bestMove = rootBestMove >= 0 ? rootBestMove : moves[0][0];
+            }
+        }
+
+        /**
+         * @return the index in the completed root moves of a random one scoring within the margin of the best;
+         *     scores at or below {@code best - randomMargin} are only bounds, so they never qualify
+         */
+        int pickWithinMargin() {
+            int threshold = score - randomMargin;
+            int candidates = 0;
+            for (int i = 0; i < completedCount; i++) {
+                if (completedScores[i] > threshold) candidates++;
+            }
+            int skip = random.nextInt(candidates);
+            for (int i = 0; i < completedCount; i++) {
+                if (completedScores[i] > threshold && skip-- == 0) return i;
+            }
+            throw new IllegalStateException("No root move within the margin");
+        }
+
+        private long probe(long hash) {
+            ttProbes++;
+            long entry = table.probe(hash);
+            if (entry != 0) ttHits++;
+            return entry;
+        }
+
+        private int searchRoot(int depth) {
+            long entry = probe(board.getHash());
+            int ttMove = entry != 0 ? TranspositionTable.move(entry) : TranspositionTable.NO_MOVE;
+            if (bestMove >= 0) ttMove = bestMove;
+            int count = generateMoves(0, ttMove);
+            rootCount = count;
+            rootBestMove = -1;
+
+            // alpha never passes the final best minus the margin, so a move scoring above that beats alpha and is
+            // exact; any other move fails low with an upper bound at or below it, which pickWithinMargin skips
+            int alpha = -INFINITY;
+            int best = -INFINITY;
+            for (int i = 0; i < count; i++) {
+                int cell = nextMove(0, i, count);
+                int result = scoreMove(cell, depth, 0, alpha, INFINITY);
+                if (stopped) return best;
+                rootScores[i] = result;
+                if (result > best) {
+                    best = result;
+                    rootBestMove = cell;
+                }
+                if (best - randomMargin > alpha) alpha = best - randomMargin;
+            }
+            table.store(board.getHash(), depth, TranspositionTable.EXACT, toTable(best, 0), rootBestMove);
+            return best;
+        }
+
+        private int negamax(int depth, int ply, int alpha, int beta) {
+            if ((++nodes & 127) == 0 && shouldStop()) {
+                stopped = true;
+            }
+            if (stopped) return 0;
+            if (depth == 0) return evaluate();
+
+            long hash = board.getHash();
+            long entry = probe(hash);
+            int ttMove = TranspositionTable.NO_MOVE;
+            if (entry != 0) {
+                ttMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int result = fromTable(TranspositionTable.score(entry), ply);
+                    int flag = TranspositionTable.flag(entry);
+                    if (flag == TranspositionTable.EXACT) return result;
+                    if (flag == TranspositionTable.LOWER_BOUND && result > alpha) alpha = result;
+                    if (flag == TranspositionTable.UPPER_BOUND && result < beta) beta = result;
+                    if (alpha >= beta) return result;
+                }
+            }
+
+            int originalAlpha = alpha;
+            int count = generateMoves(ply, ttMove);
+            int best = -INFINITY;
+            int bestMoveHere = TranspositionTable.NO_MOVE;
+            for (int i = 0; i < count; i++) {
+                int cell = nextMove(ply, i, count);
+                int result = scoreMove(cell, depth, ply, alpha, beta);
+                if (stopped) return 0;
+                if (result > best) {
+                    best = result;
+                    bestMoveHere = cell;
+                }
+                if (best > alpha) alpha = best;
+                if (alpha >= beta) {
+                    history[cell] += depth * depth;
+                    break;
+                }
+            }
+
+            int flag = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            table.store(hash, depth, flag, toTable(best, ply), bestMoveHere);
+            return best;
+        }
+
+        private boolean shouldStop() {
+            if (id != 0) return finished || stopRequested;
+            return stopRequested || System.nanoTime() >= (completedDepth > 0 ? deadline : hardDeadline);
+        }
+
+        private int scoreMove(int cell, int depth, int ply, int alpha, int beta) {
+            GameState state = board.play(cell);
+            int result;
+            if (state == GameState.PLAYING) {
+                result = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            } else if (state == GameState.DRAW) {
+                result = 0;
+            } else {
+                result = WIN_SCORE - ply - 1;
+            }
+            board.undo(cell);
+            return result;
+        }
+
+        private int generateMoves(int ply, int ttMove) {
+            int[] list = moves[ply];
+            int[] scores = moveScores[ply];
+            int count = 0;
+            if (board.getCellCount() < NEIGHBOURHOOD_MIN_CELLS) {
+                for (int cell = board.nextEmpty(0); cell >= 0; cell = board.nextEmpty(cell + 1)) {
+                    count = addMove(list, scores, count, cell, ttMove);
+                }
+            } else if (board.getMoveCount() == 0) {
+                count = addMove(list, scores, count, board.cellIndex(board.getHeight() / 2, board.getWidth() / 2), ttMove);
+            } else {
+                int width = board.getWidth();
+                int height = board.getHeight();
+                candidateStamp++;
+                for (int piece = board.nextOccupied(0); piece >= 0; piece = board.nextOccupied(piece + 1)) {
+                    int row = piece / width;
+                    int col = piece - row * width;
+                    for (int r = Math.max(0, row - 2); r <= Math.min(height - 1, row + 2); r++) {
+                        for (int c = Math.max(0, col - 2); c <= Math.min(width - 1, col + 2); c++) {
+                            int cell = r * width + c;
+                            if (candidateMarks[cell] != candidateStamp && board.isEmpty(cell)) {
+                                candidateMarks[cell] = candidateStamp;
+                                count = addMove(list, scores, count, cell, ttMove);
+                            }
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        private int addMove(int[] list, int[] scores, int count, int cell, int ttMove) {
+            list[count] = cell;
+            if (cell == ttMove) {
+                scores[count] = Integer.MAX_VALUE;
+            } else {
+                scores[count] = (history[cell] << 4) + (cellWeights[cell] << 2);
+                if (id != 0) scores[count] += ((cell + 1) * (id * 0x9E3779B9) >>> 30);
+            }
+            return count + 1;
+        }
+
+        /** Selection sort step: moves the best scored remaining move to {@code index} and returns it. */
+        private int nextMove(int ply, int index, int count) {
+            int[] list = moves[ply];
+            int[] scores = moveScores[ply];
+            int best = index;
+            for (int i = index + 1; i < count; i++) {
+                if (scores[i] > scores[best]) best = i;
+            }
+            int cell = list[best];
+            list[best] = list[index];
+            list[index] = cell;
+            int moveScore = scores[best];
+            scores[best] = scores[index];
+            scores[index] = moveScore;
+            return cell;
+        }
+
+        /**
+         * Static evaluation from the point of view of the side to move: the board's window balance,
+         * which {@link Board#play(int)} and {@link Board#undo(int)} keep up to date, so this is O(1).
+         */
+        private int evaluate() {
+            int balance = board.getWindowBalance();
+            int result = board.getCurrentPlayer() == Board.X ? balance : -balance;
+            return Math.max(-MAX_EVALUATION, Math.min(MAX_EVALUATION, result));
+        }
+    }
+}
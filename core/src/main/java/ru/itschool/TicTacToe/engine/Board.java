@@ -0,0 +1,268 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.util.Arrays;
+
+/**
+ * Headless bitboard model of a field described by {@link Rules}, up to 15x15.
+ * Each side owns a bitset with bit {@code row * width + col} set for its pieces, and every winning
+ * window of {@link Rules} keeps a count of each side's pieces in it. {@link #play(int)} and
+ * {@link #undo(int)} only touch the windows through the cell, so wins are detected when a count reaches
+ * the win length, and the Zobrist hash and the {@link #getWindowBalance() window balance} stay up to
+ * date, without rescanning the field or allocating.
+ */
+public final class Board {
+    public static final int EMPTY = -1;
+    public static final int X = 0;
+    public static final int O = 1;
+
+    /** Heuristic value of a window holding only one side's pieces, by number of pieces. */
+    private static final int[] WINDOW_WEIGHTS = new int[Rules.MAX_SIZE + 1];
+
+    /**
+     * Change of a window's weight for the side adding a piece to it, indexed by
+     * {@code mine << 4 | theirs} before the piece is added.
+     */
+    private static final int[] WINDOW_GAINS = new int[(Rules.MAX_SIZE + 1) << 4];
+
+    static {
+        int[] weights = {0, 1, 4, 16, 64, 256, 1024, 4096, 16384};
+        for (int pieces = 0; pieces < WINDOW_WEIGHTS.length; pieces++) {
+            WINDOW_WEIGHTS[pieces] = weights[Math.min(pieces, weights.length - 1)];
+        }
+        for (int mine = 0; mine < Rules.MAX_SIZE; mine++) {
+            for (int theirs = 0; theirs <= Rules.MAX_SIZE; theirs++) {
+                // an open window gets one piece stronger, or a window open for them gets blocked
+                WINDOW_GAINS[mine << 4 | theirs] = theirs == 0 ? WINDOW_WEIGHTS[mine + 1] - WINDOW_WEIGHTS[mine]
+                    : mine == 0 ? WINDOW_WEIGHTS[theirs] : 0;
+            }
+        }
+    }
+
+    private static final int WORDS = (Rules.MAX_CELLS + 63) / 64;
+
+    private final Rules rules;
+    private final int width;
+    private final int height;
+    private final int winLength;
+    private final int cellCount;
+    private final int[] cellWindowStarts;
+    private final int[] cellWindows;
+    private final long[] xBits = new long[WORDS];
+    private final long[] oBits = new long[WORDS];
+    private final byte[] xCounts;
+    private final byte[] oCounts;
+    private final long emptyHash;
+    private int windowBalance;
+    private int moveCount;
+    private long hash;
+    private GameState state;
+
+    public Board(Rules rules) {
+        this.rules = rules;
+        this.width = rules.getWidth();
+        this.height = rules.getHeight();
+        this.winLength = rules.getWinLength();
+        this.cellCount = rules.getCellCount();
+        this.cellWindowStarts = rules.cellWindowStarts();
+        this.cellWindows = rules.cellWindows();
+        this.xCounts = new byte[rules.getWindowCount()];
+        this.oCounts = new byte[rules.getWindowCount()];
+        this.emptyHash = Zobrist.key(rules);
+        reset();
+    }
+
+    /** Classic square field where a whole line wins. */
+    public Board(int size) {
+        this(Rules.classic(size));
+    }
+
+    public Board(Board other) {
+        this(other.rules);
+        copyFrom(other);
+    }
+
+    /** Makes this board a copy of another board with the same rules. */
+    public void copyFrom(Board other) {
+        System.arraycopy(other.xBits, 0, xBits, 0, WORDS);
+        System.arraycopy(other.oBits, 0, oBits, 0, WORDS);
+        System.arraycopy(other.xCounts, 0, xCounts, 0, xCounts.length);
+        System.arraycopy(other.oCounts, 0, oCounts, 0, oCounts.length);
+        windowBalance = other.windowBalance;
+        moveCount = other.moveCount;
+        hash = other.hash;
+        state = other.state;
+    }
+
+    public void reset() {
+        for (int i = 0; i < WORDS; i++) {
+            xBits[i] = 0;
+            oBits[i] = 0;
+        }
+        Arrays.fill(xCounts, (byte) 0);
+        Arrays.fill(oCounts, (byte) 0);
+        windowBalance = 0;
+        moveCount = 0;
+        hash = emptyHash;
+        state = GameState.PLAYING;
+    }
+
+    /**
+     * Places the current player's piece on an empty cell and passes the turn.
+     * @return the game state after the move
+     */
+    public GameState play(int cell) {
+        if (state != GameState.PLAYING || cell < 0 || cell >= cellCount || !isEmpty(cell)) {
+            throw new IllegalStateException("Cell " + cell + " is not playable");
+        }
+        int player = moveCount & 1;
+        byte[] own = player == X ? xCounts : oCounts;
+        byte[] other = player == X ? oCounts : xCounts;
+        (player == X ? xBits : oBits)[cell >>> 6] |= 1L << cell;
+        hash ^= Zobrist.key(player, cell);
+        moveCount++;
+
+        boolean won = false;
+        int gain = 0;
+        for (int i = cellWindowStarts[cell], end = cellWindowStarts[cell + 1]; i < end; i++) {
+            int window = cellWindows[i];
+            int mine = own[window]++;
+            gain += WINDOW_GAINS[mine << 4 | other[window]];
+            if (mine + 1 == winLength) won = true;
+        }
+        windowBalance += player == X ? gain : -gain;
+
+        if (won) {
+            state = player == X ? GameState.X_WON : GameState.O_WON;
+        } else if (moveCount == cellCount) {
+            state = GameState.DRAW;
+        }
+        return state;
+    }
+
+    public GameState play(int row, int col) {
+        return play(cellIndex(row, col));
+    }
+
+    /** Takes back the last move, which must have been played on {@code cell}. */
+    public void undo(int cell) {
+        moveCount--;
+        int player = moveCount & 1;
+        byte[] own = player == X ? xCounts : oCounts;
+        byte[] other = player == X ? oCounts : xCounts;
+        (player == X ? xBits : oBits)[cell >>> 6] &= ~(1L << cell);
+        hash ^= Zobrist.key(player, cell);
+
+        int gain = 0;
+        for (int i = cellWindowStarts[cell], end = cellWindowStarts[cell + 1]; i < end; i++) {
+            int window = cellWindows[i];
+            int mine = --own[window];
+            gain += WINDOW_GAINS[mine << 4 | other[window]];
+        }
+        windowBalance -= player == X ? gain : -gain;
+        state = GameState.PLAYING;
+    }
+
+    public int cellIndex(int row, int col) {
+        return row * width + col;
+    }
+
+    public int get(int cell) {
+        long mask = 1L << cell;
+        if ((xBits[cell >>> 6] & mask) != 0) return X;
+        if ((oBits[cell >>> 6] & mask) != 0) return O;
+        return EMPTY;
+    }
+
+    public int get(int row, int col) {
+        return get(cellIndex(row, col));
+    }
+
+    public boolean isEmpty(int cell) {
+        return ((xBits[cell >>> 6] | oBits[cell >>> 6]) & (1L << cell)) == 0;
+    }
+
+    /** @return the first empty cell at or after {@code from}, or -1 if there is none */
+    public int nextEmpty(int from) {
+        for (int word = from >>> 6; word < WORDS; word++) {
+            long empty = ~(xBits[word] | oBits[word]);
+            if (word == from >>> 6) empty &= -1L << from;
+            if (empty != 0) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(empty);
+                return cell < cellCount ? cell : -1;
+            }
+        }
+        return -1;
+    }
+
+    /** @return the first occupied cell at or after {@code from}, or -1 if there is none */
+    public int nextOccupied(int from) {
+        for (int word = from >>> 6; word < WORDS; word++) {
+            long occupied = xBits[word] | oBits[word];
+            if (word == from >>> 6) occupied &= -1L << from;
+            if (occupied != 0) return (word << 6) + Long.numberOfTrailingZeros(occupied);
+        }
+        return -1;
+    }
+
+    /** Pieces of X on the first 64 cells; covers the whole field for fields of up to 8x8. */
+    public long getXBits() {
+        return xBits[0];
+    }
+
+    /** Pieces of O on the first 64 cells; covers the whole field for fields of up to 8x8. */
+    public long getOBits() {
+        return oBits[0];
+    }
+
+    /**
+     * Sum over all windows of the weight of X's pieces in windows O has not entered, minus the same
+     * for O; a cheap positional score from X's point of view, kept up to date by every move.
+     */
+    public int getWindowBalance() {
+        return windowBalance;
+    }
+
+    /**
+     * Zobrist hash of the position. It starts from a key of the rules, so positions with the same pieces on
+     * different fields hash differently and one transposition table can serve any rules.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getCurrentPlayer() {
+        return moveCount & 1;
+    }
+
+    public GameState getState() {
+        return state;
+    }
+
+    public static char symbol(int player) {
+        return player == X ? 'X' : player == O ? 'O' : ' ';
+    }
+}
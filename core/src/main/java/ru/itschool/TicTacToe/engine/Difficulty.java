@@ -0,0 +1,70 @@
+package ru.itschool.TicTacToe.engine;
+
+/**
+ * AI strength levels. With {@link AlphaBetaSearch} lower levels search shallower, think less and play
+ * a random move among those scoring close to the best; only Perfect uses the opening book. Random margins
+ * are in evaluation points, where a window holding k pieces of one side is worth 4^(k-1).
+ * With {@link MctsSearch} lower levels get fewer playouts and less time.
+ */
+public enum Difficulty {
+    /** Takes wins and blocks immediate threats, otherwise plays almost anywhere near the pieces. */
+    EASY("Easy", 2, 30, 4096, 200),
+    /** Looks two moves ahead for each side and drifts between reasonable moves. */
+    MEDIUM("Medium", 4, 100, 24, 2_000),
+    /** Searches deeply and only varies between equally scored moves. */
+    HARD("Hard", 8, 300, 1, 20_000),
+    /** Full strength: unlimited depth, the longest budget and the opening book. */
+    PERFECT("Perfect", AlphaBetaSearch.MAX_PLY, 1000, 0, 0);
+
+    private final String label;
+    private final int maxDepth;
+    private final long timeBudgetMillis;
+    private final int randomMargin;
+    private final long maxPlayouts;
+
+    Difficulty(String label, int maxDepth, long timeBudgetMillis, int randomMargin, long maxPlayouts) {
+        this.label = label;
+        this.maxDepth = maxDepth;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.randomMargin = randomMargin;
+        this.maxPlayouts = maxPlayouts;
+    }
+
+    /** Sets the search's depth, time budget and random margin; the latency cap and threads are left alone. */
+    public void configure(AlphaBetaSearch search) {
+        search.setMaxDepth(maxDepth);
+        search.setTimeBudgetMillis(timeBudgetMillis);
+        search.setRandomMargin(randomMargin);
+    }
+
+    /** Sets the search's time budget and playout limit; the latency cap and threads are left alone. */
+    public void configure(MctsSearch search) {
+        search.setTimeBudgetMillis(timeBudgetMillis);
+        search.setMaxPlayouts(maxPlayouts);
+    }
+
+    public boolean usesOpeningBook() {
+        return this == PERFECT;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public int getRandomMargin() {
+        return randomMargin;
+    }
+
+    /** @return the playouts a move may use with {@link MctsSearch}, 0 for as many as the time allows */
+    public long getMaxPlayouts() {
+        return maxPlayouts;
+    }
+}
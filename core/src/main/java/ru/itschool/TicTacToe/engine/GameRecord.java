@@ -0,0 +1,106 @@
+package ru.itschool.TicTacToe.engine;
+
+/**
+ * One game as it is stored in a move log: the rules, how it was played, when, how it ended and the
+ * cells in move order, one byte each. Records are mutable so a reader can refill one instance per game.
+ */
+public final class GameRecord {
+    public static final int MODE_HOTSEAT = 0;
+    public static final int MODE_VS_AI = 1;
+    /** Played headless by the simulator. */
+    public static final int MODE_SIMULATED = 2;
+    /** Played against another client through a game server. */
+    public static final int MODE_ONLINE = 3;
+
+    private Rules rules;
+    private int mode;
+    private long startMillis;
+    private long endMillis;
+    private GameState result = GameState.PLAYING;
+    private final byte[] moves = new byte[Rules.MAX_CELLS];
+    private int moveCount;
+
+    /** Clears the record for a new game. */
+    public void start(Rules rules, int mode, long startMillis) {
+        this.rules = rules;
+        this.mode = mode;
+        this.startMillis = startMillis;
+        this.endMillis = startMillis;
+        this.result = GameState.PLAYING;
+        this.moveCount = 0;
+    }
+
+    public void addMove(int cell) {
+        moves[moveCount++] = (byte) cell;
+    }
+
+    public void removeLastMove() {
+        moveCount--;
+    }
+
+    /** @param result how the game ended, or {@link GameState#PLAYING} if it was abandoned */
+    public void finish(GameState result, long endMillis) {
+        this.result = result;
+        this.endMillis = endMillis;
+    }
+
+    /** Makes this record a copy of another one. */
+    public void copyFrom(GameRecord other) {
+        set(other.rules, other.mode, other.result, other.startMillis, other.endMillis);
+        System.arraycopy(other.moves, 0, moves, 0, other.moveCount);
+        moveCount = other.moveCount;
+    }
+
+    void set(Rules rules, int mode, GameState result, long startMillis, long endMillis) {
+        this.rules = rules;
+        this.mode = mode;
+        this.result = result;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    /** Gives the reader direct access to the move bytes. */
+    byte[] moves() {
+        return moves;
+    }
+
+    void setMoveCount(int moveCount) {
+        this.moveCount = moveCount;
+    }
+
+    /** Resets the board and plays the first {@code plies} moves on it. */
+    public void replay(Board board, int plies) {
+        board.reset();
+        for (int ply = 0; ply < plies; ply++) {
+            board.play(getMove(ply));
+        }
+    }
+
+    public int getMove(int ply) {
+        return moves[ply] & 0xFF;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public GameState getResult() {
+        return result;
+    }
+}
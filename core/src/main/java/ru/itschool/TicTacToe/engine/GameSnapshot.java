@@ -0,0 +1,167 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An in-progress game as it is saved when the app is paused, so it can be resumed after the process dies:
+ * the rules, how it is played, the AI's level and kind, when it started, the moves and the taken-back
+ * moves redo can play again. The board, the side to move and whether the AI is due are all replayed
+ * from the moves, which keeps the snapshot a few dozen bytes on any field.
+ * <p>
+ * The layout is big-endian: {@code "TTTG"}, version, mode, width, height, win length, difficulty ordinal + 1
+ * (0 for none), flags, move count and redo count as shorts, start time as a long, then one byte per cell
+ * for the moves followed by the redo moves.
+ */
+public final class GameSnapshot {
+    static final int MAGIC = 0x54545447;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 26;
+    /** The AI plays Monte Carlo tree search rather than alpha-beta. */
+    private static final int FLAG_MONTE_CARLO = 1;
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+
+    private final Rules rules;
+    private final int mode;
+    private final Difficulty difficulty;
+    private final boolean monteCarlo;
+    private final long startMillis;
+    private final byte[] cells;
+    private final int moveCount;
+
+    /**
+     * @param mode {@link GameRecord#MODE_HOTSEAT} or {@link GameRecord#MODE_VS_AI}
+     * @param difficulty level of the AI opponent, or null in hotseat games
+     * @param cells the moves in order followed by the taken-back moves, next to redo first
+     */
+    public GameSnapshot(Rules rules, int mode, Difficulty difficulty, boolean monteCarlo, long startMillis,
+                        int[] cells, int moveCount, int redoCount) {
+        if (mode != GameRecord.MODE_HOTSEAT && mode != GameRecord.MODE_VS_AI) {
+            throw new IllegalArgumentException("Only local games can be resumed, mode " + mode);
+        }
+        this.rules = rules;
+        this.mode = mode;
+        this.difficulty = difficulty;
+        this.monteCarlo = monteCarlo;
+        this.startMillis = startMillis;
+        this.moveCount = moveCount;
+        this.cells = new byte[moveCount + redoCount];
+        for (int i = 0; i < this.cells.length; i++) {
+            this.cells[i] = (byte) cells[i];
+        }
+    }
+
+    private GameSnapshot(Rules rules, int mode, Difficulty difficulty, boolean monteCarlo, long startMillis,
+                         byte[] cells, int moveCount) {
+        this.rules = rules;
+        this.mode = mode;
+        this.difficulty = difficulty;
+        this.monteCarlo = monteCarlo;
+        this.startMillis = startMillis;
+        this.cells = cells;
+        this.moveCount = moveCount;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + cells.length);
+        out.putInt(MAGIC).putInt(VERSION)
+            .put((byte) mode)
+            .put((byte) rules.getWidth())
+            .put((byte) rules.getHeight())
+            .put((byte) rules.getWinLength())
+            .put((byte) (difficulty == null ? 0 : difficulty.ordinal() + 1))
+            .put((byte) (monteCarlo ? FLAG_MONTE_CARLO : 0))
+            .putShort((short) moveCount)
+            .putShort((short) (cells.length - moveCount))
+            .putLong(startMillis)
+            .put(cells);
+        return out.array();
+    }
+
+    /**
+     * Reads a snapshot and checks that its moves and redo moves make a legal game on its rules.
+     * @throws IOException if the bytes are not a snapshot this version can resume
+     */
+    public static GameSnapshot fromBytes(byte[] bytes) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IOException("Not a game snapshot");
+        }
+        int mode = in.get() & 0xFF;
+        int width = in.get() & 0xFF;
+        int height = in.get() & 0xFF;
+        int winLength = in.get() & 0xFF;
+        int difficulty = in.get() & 0xFF;
+        int flags = in.get() & 0xFF;
+        int moveCount = in.getShort();
+        int redoCount = in.getShort();
+        long startMillis = in.getLong();
+        if ((mode != GameRecord.MODE_HOTSEAT && mode != GameRecord.MODE_VS_AI) || difficulty > DIFFICULTIES.length
+            || (mode == GameRecord.MODE_VS_AI) != (difficulty != 0) || moveCount < 0 || redoCount < 0
+            || in.remaining() != moveCount + redoCount) {
+            throw new IOException("Corrupt game snapshot");
+        }
+        Rules rules;
+        try {
+            rules = Rules.of(width, height, winLength);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt game snapshot: " + e.getMessage());
+        }
+        byte[] cells = new byte[moveCount + redoCount];
+        in.get(cells);
+        GameSnapshot snapshot = new GameSnapshot(rules, mode, difficulty == 0 ? null : DIFFICULTIES[difficulty - 1],
+            (flags & FLAG_MONTE_CARLO) != 0, startMillis, cells, moveCount);
+        // redo plays the taken-back moves on top of the current ones, so all of them have to be legal
+        Board board = new Board(rules);
+        for (int i = 0; i < cells.length; i++) {
+            int cell = snapshot.getCell(i);
+            if (cell >= rules.getCellCount() || !board.isEmpty(cell) || board.getState() != GameState.PLAYING) {
+                throw new IOException("Corrupt game snapshot: illegal move " + cell + " at ply " + i);
+            }
+            board.play(cell);
+        }
+        return snapshot;
+    }
+
+    /** Resets the board and plays the moves on it, but not the redo moves. */
+    public void replay(Board board) {
+        board.reset();
+        for (int ply = 0; ply < moveCount; ply++) {
+            board.play(getCell(ply));
+        }
+    }
+
+    /** @return the move at a ply below the move count, or a redo move from the move count on */
+    public int getCell(int ply) {
+        return cells[ply] & 0xFF;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getRedoCount() {
+        return cells.length - moveCount;
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /** @return the level of the AI opponent, or null in hotseat games */
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    public boolean isMonteCarlo() {
+        return monteCarlo;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+}
@@ -0,0 +1,5 @@
+package ru.itschool.TicTacToe.engine;
+
+public enum GameState {
+    PLAYING, X_WON, O_WON, DRAW
+}
@@ -0,0 +1,116 @@
+package ru.itschool.TicTacToe.engine;
+
+/**
+ * Results of every finished game of one mode and rules, kept by {@link StatsStore}. Wins, losses
+ * and streaks are counted for the player on this device, so only in modes where it has a side:
+ * against the AI and online. Hotseat games only count X wins, O wins and draws.
+ */
+public final class GameStats {
+    private final int mode;
+    private final Rules rules;
+    int games;
+    int xWins;
+    int oWins;
+    int draws;
+    int wins;
+    int losses;
+    /** Wins in a row if positive, losses in a row if negative. */
+    int streak;
+    int bestStreak;
+    /** Fewest moves of a won game, 0 before the first win. */
+    int fastestWin;
+    long lastPlayedMillis;
+
+    GameStats(int mode, Rules rules) {
+        this.mode = mode;
+        this.rules = rules;
+    }
+
+    GameStats(GameStats other) {
+        this(other.mode, other.rules);
+        games = other.games;
+        xWins = other.xWins;
+        oWins = other.oWins;
+        draws = other.draws;
+        wins = other.wins;
+        losses = other.losses;
+        streak = other.streak;
+        bestStreak = other.bestStreak;
+        fastestWin = other.fastestWin;
+        lastPlayedMillis = other.lastPlayedMillis;
+    }
+
+    /**
+     * @param localSide the side of the player on this device, or {@link Board#EMPTY} for hotseat games
+     */
+    void add(GameState result, int localSide, int moveCount, long timeMillis) {
+        games++;
+        lastPlayedMillis = Math.max(lastPlayedMillis, timeMillis);
+        switch (result) {
+            case X_WON: xWins++; break;
+            case O_WON: oWins++; break;
+            case DRAW: draws++; break;
+            default: break;
+        }
+        if (localSide == Board.EMPTY) return;
+        if (result == GameState.DRAW) {
+            streak = 0;
+        } else if ((result == GameState.X_WON) == (localSide == Board.X)) {
+            wins++;
+            streak = Math.max(streak, 0) + 1;
+            bestStreak = Math.max(bestStreak, streak);
+            if (fastestWin == 0 || moveCount < fastestWin) fastestWin = moveCount;
+        } else {
+            losses++;
+            streak = Math.min(streak, 0) - 1;
+        }
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public int getXWins() {
+        return xWins;
+    }
+
+    public int getOWins() {
+        return oWins;
+    }
+
+    public int getDraws() {
+        return draws;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    public int getStreak() {
+        return streak;
+    }
+
+    public int getBestStreak() {
+        return bestStreak;
+    }
+
+    public int getFastestWin() {
+        return fastestWin;
+    }
+
+    public long getLastPlayedMillis() {
+        return lastPlayedMillis;
+    }
+}
@@ -0,0 +1,526 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Monte Carlo tree search for large fields, where alpha-beta cannot look far ahead: UCT selection,
+ * uniformly random playouts to the end of the game, and the move visited most at the root is played.
+ * On fields of 7x7 and up the tree only holds cells within two cells of a piece; playouts use every empty cell.
+ * <p>
+ * Nodes live in arrays allocated once and reused by every search, and each tree copies the position into
+ * a board it keeps while the rules stay the same, so searching allocates nothing beyond the helper threads'
+ * tasks; when the arrays are full the tree stops growing and playouts start from its leaves. A node is expanded
+ * after {@link #EXPAND_VISITS} playouts, with all its moves at once. Expansion tries every move, so a move
+ * that wins at once is proven and so is its parent: the tree solves short tactics exactly instead of
+ * sampling them. The root's moves are expanded when the search starts, so an immediate win or threat is
+ * answered even if time runs out after a few playouts.
+ * <p>
+ * With more than one thread every thread grows its own tree from the same root (root parallelism),
+ * with its share of the node arrays, and the visits of the root moves are summed at the end.
+ */
+public final class MctsSearch implements SearchEngine {
+    /** Smallest field this engine is offered for; below it alpha-beta searches to the end. */
+    public static final int MIN_CELLS = 49;
+    private static final int NEIGHBOURHOOD_MIN_CELLS = 49;
+    private static final int EXPAND_VISITS = 4;
+    private static final double EXPLORATION = 1.4;
+    /** Playouts between clock checks. */
+    private static final int CHECK_INTERVAL = 32;
+    /** Extra draws a playout makes to find a cell next to a piece before it takes any empty cell. */
+    private static final int ROLLOUT_RETRIES = 3;
+
+    private static final byte UNKNOWN = 0;
+    /** A proven win for the player who moved into the node. */
+    private static final byte WIN = 1;
+    private static final byte LOSS = 2;
+    /** The node's move filled the board. */
+    private static final byte DRAW = 3;
+
+    private final int nodeCapacity;
+    private final SearchStats stats = new SearchStats();
+    private final int[] rootVisits = new int[Rules.MAX_CELLS];
+    private final long[] rootRewards = new long[Rules.MAX_CELLS];
+    private final byte[] rootProven = new byte[Rules.MAX_CELLS];
+
+    private long timeBudgetMillis = 300;
+    private long latencyCapMillis;
+    private long maxPlayouts;
+    private int threads = 1;
+    private long seed = 0x9E3779B97F4A7C15L;
+    private long searches;
+
+    private Tree[] trees = new Tree[0];
+    private ExecutorService helperPool;
+    private long deadline;
+    private volatile boolean stopRequested;
+
+    public MctsSearch() {
+        this(19);
+    }
+
+    /** @param nodeCapacityLog2 log2 of the number of tree nodes shared by all threads */
+    public MctsSearch(int nodeCapacityLog2) {
+        this.nodeCapacity = 1 << nodeCapacityLog2;
+    }
+
+    @Override
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    @Override
+    public void setLatencyCapMillis(long latencyCapMillis) {
+        this.latencyCapMillis = latencyCapMillis;
+    }
+
+    public long getLatencyCapMillis() {
+        return latencyCapMillis;
+    }
+
+    /** Sets the playouts a move may use over all threads, 0 for as many as the time allows. */
+    public void setMaxPlayouts(long maxPlayouts) {
+        this.maxPlayouts = maxPlayouts;
+    }
+
+    public long getMaxPlayouts() {
+        return maxPlayouts;
+    }
+
+    @Override
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        if (threads != this.threads) {
+            close();
+            this.threads = threads;
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /** Sets the seed of the playouts; every later search derives its own from it, for repeatable games. */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        searches = 0;
+    }
+
+    /** Asks a running {@link #chooseMove(Board)} to return the most visited move so far. */
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public int chooseMove(Board position) {
+        if (position.getState() != GameState.PLAYING) {
+            throw new IllegalStateException("Game is already over");
+        }
+        long start = System.nanoTime();
+        // the cap leaves a tenth for joining the threads, like alpha-beta
+        long budgetNanos = timeBudgetMillis * 1_000_000L;
+        deadline = start + (latencyCapMillis > 0 ? Math.min(budgetNanos, latencyCapMillis * 900_000L) : budgetNanos);
+        stopRequested = false;
+        prepare();
+        long perTree = maxPlayouts > 0 ? (maxPlayouts + trees.length - 1) / trees.length : Long.MAX_VALUE;
+        long searchSeed = seed + ++searches * 0x9E3779B97F4A7C15L;
+
+        // every thread sets up its own tree, so expanding the roots runs in parallel too
+        Future<?>[] helpers = new Future<?>[trees.length - 1];
+        for (int i = 1; i < trees.length; i++) {
+            Tree helper = trees[i];
+            helpers[i - 1] = helperPool.submit(() -> {
+                helper.reset(position, mix(searchSeed + helper.id));
+                helper.run(perTree);
+            });
+        }
+        trees[0].reset(position, mix(searchSeed));
+        trees[0].run(perTree);
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+        }
+
+        stats.reset();
+        stats.threads = trees.length;
+        stats.monteCarlo = true;
+        int move = pickMove(stats);
+        for (Tree tree : trees) {
+            stats.playouts += tree.playouts;
+            stats.nodes += tree.size;
+            stats.depth = Math.max(stats.depth, tree.maxDepth);
+        }
+        stats.bestMove = move;
+        stats.elapsedNanos = System.nanoTime() - start;
+        return move;
+    }
+
+    /**
+     * Sums the root moves over all trees and picks a proven win if there is one, otherwise the most visited
+     * move not proven to lose; a proven loss is only played when every move loses.
+     */
+    private int pickMove(SearchStats result) {
+        Tree main = trees[0];
+        int first = main.firstChild[0];
+        int count = main.childCount[0];
+        for (int i = 0; i < count; i++) {
+            int cell = main.move[first + i];
+            rootVisits[cell] = 0;
+            rootRewards[cell] = 0;
+            rootProven[cell] = UNKNOWN;
+        }
+        for (Tree tree : trees) {
+            int treeFirst = tree.firstChild[0];
+            for (int i = 0; i < tree.childCount[0]; i++) {
+                int child = treeFirst + i;
+                int cell = tree.move[child];
+                rootVisits[cell] += tree.visits[child];
+                rootRewards[cell] += tree.reward[child];
+                if (tree.proven[child] == WIN || tree.proven[child] == LOSS) rootProven[cell] = tree.proven[child];
+            }
+        }
+
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            int cell = main.move[first + i];
+            if (rootProven[cell] == WIN) {
+                result.score = AlphaBetaSearch.WIN_SCORE - 1;
+                return cell;
+            }
+            if (best < 0 || isBetter(cell, best)) best = cell;
+        }
+        if (rootProven[best] == LOSS) {
+            result.score = -AlphaBetaSearch.WIN_SCORE + 2;
+        } else if (rootVisits[best] > 0) {
+            // rewards count half points: 2 for a win, 1 for a draw
+            result.score = (int) (rootRewards[best] * 1000 / rootVisits[best] - 1000);
+        }
+        return best;
+    }
+
+    private boolean isBetter(int cell, int than) {
+        boolean loses = rootProven[cell] == LOSS;
+        if (loses != (rootProven[than] == LOSS)) return !loses;
+        return rootVisits[cell] > rootVisits[than];
+    }
+
+    @Override
+    public void close() {
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+            helperPool = null;
+        }
+        trees = new Tree[0];
+    }
+
+    private void prepare() {
+        if (trees.length == threads) return;
+        trees = new Tree[threads];
+        for (int i = 0; i < threads; i++) {
+            trees[i] = new Tree(i, Math.max(nodeCapacity / threads, Rules.MAX_CELLS + 1));
+        }
+        if (threads > 1) {
+            helperPool = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "mcts-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** SplitMix64 finalizer, so that neighbouring seeds give unrelated playouts. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return z == 0 ? 1 : z;
+    }
+
+    /**
+     * One thread's tree. A node's children are stored next to each other from {@code firstChild};
+     * {@code childCount} is -1 until the node is expanded. Rewards are kept in half points for the player
+     * who moved into the node, so that they stay integers.
+     */
+    private final class Tree {
+        private final int id;
+        private final int capacity;
+        private final int[] move;
+        private final int[] visits;
+        private final int[] reward;
+        private final int[] firstChild;
+        private final int[] childCount;
+        private final byte[] proven;
+        private int size;
+
+        /** Empty cells; the ones after {@code emptyCount} were filled last first, so undoing restores them in order. */
+        private final int[] empties = new int[Rules.MAX_CELLS];
+        private final int[] emptyIndex = new int[Rules.MAX_CELLS];
+        private int emptyCount;
+        private final int[] path = new int[Rules.MAX_CELLS + 1];
+        private final int[] candidateMarks = new int[Rules.MAX_CELLS];
+        private int candidateStamp;
+
+        private Board board;
+        private long random;
+        private long playouts;
+        private int maxDepth;
+
+        Tree(int id, int capacity) {
+            this.id = id;
+            this.capacity = capacity;
+            move = new int[capacity];
+            visits = new int[capacity];
+            reward = new int[capacity];
+            firstChild = new int[capacity];
+            childCount = new int[capacity];
+            proven = new byte[capacity];
+        }
+
+        void reset(Board position, long seed) {
+            if (board == null || !board.getRules().equals(position.getRules())) {
+                board = new Board(position);
+            } else {
+                board.copyFrom(position);
+            }
+            random = seed;
+            playouts = 0;
+            maxDepth = 0;
+            emptyCount = 0;
+            for (int cell = board.nextEmpty(0); cell >= 0; cell = board.nextEmpty(cell + 1)) {
+                emptyIndex[cell] = emptyCount;
+                empties[emptyCount++] = cell;
+            }
+            size = 1;
+            move[0] = -1;
+            visits[0] = 0;
+            reward[0] = 0;
+            childCount[0] = -1;
+            proven[0] = UNKNOWN;
+            expand(0);
+            if (proven[0] != UNKNOWN) return;
+            // the root's moves are expanded at once, so the opponent's immediate wins are known before any playout
+            int first = firstChild[0];
+            for (int child = first; child < first + childCount[0]; child++) {
+                if (proven[child] != UNKNOWN) continue;
+                play(move[child]);
+                expand(child);
+                undo(move[child]);
+            }
+            for (int child = first; child < first + childCount[0]; child++) {
+                if (proven[child] == LOSS && solve(0, child)) break;
+            }
+        }
+
+        void run(long maxPlayouts) {
+            while (proven[0] == UNKNOWN && playouts < maxPlayouts) {
+                playout();
+                if (++playouts % CHECK_INTERVAL == 0 && (stopRequested || System.nanoTime() >= deadline)) break;
+            }
+        }
+
+        /** Walks down the tree, expands or plays out the leaf, and backs the result up the path. */
+        private void playout() {
+            int node = 0;
+            int depth = 0;
+            int result;
+            while (true) {
+                byte state = proven[node];
+                if (state != UNKNOWN) {
+                    result = state == WIN ? 2 : state == LOSS ? 0 : 1;
+                    break;
+                }
+                if (childCount[node] < 0 && (visits[node] < EXPAND_VISITS || !expand(node))) {
+                    result = rollout();
+                    break;
+                }
+                if (proven[node] != UNKNOWN) continue;
+                node = select(node);
+                play(move[node]);
+                path[++depth] = node;
+            }
+            if (depth > maxDepth) maxDepth = depth;
+
+            boolean solving = proven[node] == WIN || proven[node] == LOSS;
+            for (int d = depth; d >= 0; d--) {
+                int current = path[d];
+                visits[current]++;
+                reward[current] += result;
+                result = 2 - result;
+                if (d > 0) undo(move[current]);
+                if (solving && d > 0) solving = solve(path[d - 1], current);
+            }
+        }
+
+        /**
+         * Applies the solver rules to {@code parent} after one of its children was proven. If the side to move
+         * has a winning move, the parent is lost for the player who moved into it; if every move loses, it is won.
+         * @return whether the parent was proven
+         */
+        private boolean solve(int parent, int child) {
+            if (proven[child] == WIN) {
+                proven[parent] = LOSS;
+                return true;
+            }
+            int first = firstChild[parent];
+            for (int i = 0; i < childCount[parent]; i++) {
+                if (proven[first + i] != LOSS) return false;
+            }
+            proven[parent] = WIN;
+            return true;
+        }
+
+        /** UCT: a proven win is taken at once, proven losses are skipped and unvisited moves are tried first. */
+        private int select(int node) {
+            int first = firstChild[node];
+            int count = childCount[node];
+            double logVisits = Math.log(Math.max(visits[node], 1));
+            int best = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < first + count; child++) {
+                byte state = proven[child];
+                if (state == WIN) return child;
+                if (state == LOSS) continue;
+                int n = visits[child];
+                if (n == 0) return child;
+                double value = reward[child] / (2.0 * n) + EXPLORATION * Math.sqrt(logVisits / n);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Adds all moves of the node's position as its children, trying each to mark the ones that end the game.
+         * @return false if the node arrays are full
+         */
+        private boolean expand(int node) {
+            int first = size;
+            int count = 0;
+            boolean won = false;
+            if (board.getCellCount() < NEIGHBOURHOOD_MIN_CELLS || board.getMoveCount() == 0) {
+                if (first + emptyCount > capacity) return false;
+                for (int i = 0; i < emptyCount; i++) {
+                    won |= addChild(first + count++, empties[i]);
+                }
+            } else {
+                int width = board.getWidth();
+                int height = board.getHeight();
+                candidateStamp++;
+                for (int piece = board.nextOccupied(0); piece >= 0; piece = board.nextOccupied(piece + 1)) {
+                    int row = piece / width;
+                    int col = piece - row * width;
+                    for (int r = Math.max(0, row - 2); r <= Math.min(height - 1, row + 2); r++) {
+                        for (int c = Math.max(0, col - 2); c <= Math.min(width - 1, col + 2); c++) {
+                            int cell = r * width + c;
+                            if (candidateMarks[cell] != candidateStamp && board.isEmpty(cell)) {
+                                candidateMarks[cell] = candidateStamp;
+                                if (first + count >= capacity) return false;
+                                won |= addChild(first + count++, cell);
+                            }
+                        }
+                    }
+                }
+            }
+            size = first + count;
+            firstChild[node] = first;
+            childCount[node] = count;
+            if (won) proven[node] = LOSS;
+            return true;
+        }
+
+        /** @return whether the move wins at once */
+        private boolean addChild(int child, int cell) {
+            move[child] = cell;
+            visits[child] = 0;
+            reward[child] = 0;
+            childCount[child] = -1;
+            GameState state = board.play(cell);
+            board.undo(cell);
+            proven[child] = state == GameState.PLAYING ? UNKNOWN : state == GameState.DRAW ? DRAW : WIN;
+            return proven[child] == WIN;
+        }
+
+        /**
+         * Plays random moves to the end of the game and takes them back.
+         * @return the result in half points for the player who moved into the current position
+         */
+        private int rollout() {
+            int mover = board.getCurrentPlayer();
+            int start = emptyCount;
+            GameState state = GameState.PLAYING;
+            while (state == GameState.PLAYING) {
+                int cell = empties[(int) ((nextRandom() >>> 33) % emptyCount)];
+                for (int retry = 0; retry < ROLLOUT_RETRIES && !hasNeighbour(cell); retry++) {
+                    cell = empties[(int) ((nextRandom() >>> 33) % emptyCount)];
+                }
+                removeEmpty(cell);
+                state = board.play(cell);
+            }
+            while (emptyCount < start) {
+                board.undo(empties[emptyCount++]);
+            }
+            if (state == GameState.DRAW) return 1;
+            return (state == GameState.X_WON) == (mover == Board.X) ? 0 : 2;
+        }
+
+        /** @return whether a piece touches the cell, sides or corners */
+        private boolean hasNeighbour(int cell) {
+            int width = board.getWidth();
+            int row = cell / width;
+            int col = cell - row * width;
+            for (int r = Math.max(0, row - 1); r <= Math.min(board.getHeight() - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(width - 1, col + 1); c++) {
+                    if (!board.isEmpty(r * width + c)) return true;
+                }
+            }
+            return false;
+        }
+
+        private void play(int cell) {
+            removeEmpty(cell);
+            board.play(cell);
+        }
+
+        private void undo(int cell) {
+            board.undo(cell);
+            emptyCount++;
+        }
+
+        private void removeEmpty(int cell) {
+            int index = emptyIndex[cell];
+            int last = empties[--emptyCount];
+            empties[index] = last;
+            emptyIndex[last] = index;
+            empties[emptyCount] = cell;
+            emptyIndex[cell] = emptyCount;
+        }
+
+        private long nextRandom() {
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            return random * 0x2545F4914F6CDD1DL;
+        }
+    }
+}
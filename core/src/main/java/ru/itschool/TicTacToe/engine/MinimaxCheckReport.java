@@ -0,0 +1,172 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Checks {@link AlphaBetaSearch} against plain minimax with the same evaluation on random positions of
+ * fields small enough for every empty cell to be a candidate move. For each position the search's score
+ * must equal the minimax value at the depth it completed and its move must reach that value; with a random
+ * margin, the move played must score exactly what minimax gives it and lie within the margin of the best.
+ * Then one engine searches a position of one rules and then one of another, as a server AI thread does
+ * between matches, and its result on the second must equal a fresh engine's. Prints the mismatches and
+ * fails if there are any.
+ * Run with {@code gradlew :core:minimaxCheck}.
+ * <p>
+ * Arguments: {@code [positions per field] [depth] [output file]}.
+ */
+public final class MinimaxCheckReport {
+    private static final Rules[] RULES = {Rules.of(5, 5, 4), Rules.of(6, 6, 4)};
+    /** Rules searched one after the other by one engine; the first field's cell indices are cells of the second. */
+    private static final Rules[][] SWITCHES = {
+        {Rules.of(3, 3, 3), Rules.of(4, 4, 4)}, {Rules.of(5, 5, 4), Rules.of(6, 6, 4)}};
+    private static final int MARGIN = 20;
+    private static final int INFINITY = AlphaBetaSearch.WIN_SCORE + 1;
+    private static final int MAX_EVALUATION = AlphaBetaSearch.WIN_SCORE / 2;
+
+    private MinimaxCheckReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Alpha-beta against minimax, %d positions per field, depth %d, margin %d%n",
+            positions, depth, MARGIN));
+        report.append(String.format("%-10s %12s %12s %12s%n", "rules", "wrong score", "not best", "margin"));
+
+        RandomPlayer player = new RandomPlayer(7);
+        int failures = 0;
+        for (Rules rules : RULES) {
+            Board board = new Board(rules);
+            int wrongScores = 0;
+            int notBest = 0;
+            int marginMisses = 0;
+            for (int position = 0; position < positions; position++) {
+                play(board, player, position % (rules.getCellCount() / 2 + 1));
+                try (AlphaBetaSearch search = new AlphaBetaSearch(16)) {
+                    search.setMaxDepth(depth);
+                    search.setTimeBudgetMillis(60_000);
+                    int move = search.chooseMove(board);
+                    SearchStats stats = search.getStats();
+                    int[] scores = rootScores(board, stats.getDepth());
+                    int best = max(board, scores);
+                    if (stats.getScore() != best) wrongScores++;
+                    if (scores[move] != best) notBest++;
+
+                    search.getTable().clear();
+                    search.setRandomMargin(MARGIN);
+                    search.setSeed(position);
+                    move = search.chooseMove(board);
+                    stats = search.getStats();
+                    scores = rootScores(board, stats.getDepth());
+                    best = max(board, scores);
+                    if (stats.getScore() != scores[move] || scores[move] <= best - MARGIN) marginMisses++;
+                }
+            }
+            failures += wrongScores + notBest + marginMisses;
+            report.append(String.format("%-10s %12s %12s %12s%n", rules.getName().replace(" ", ""),
+                wrongScores + "/" + positions, notBest + "/" + positions, marginMisses + "/" + positions));
+        }
+
+        report.append(String.format("%-10s %-10s %12s %12s%n", "first", "then", "wrong score", "other move"));
+        for (Rules[] pair : SWITCHES) {
+            Board first = new Board(pair[0]);
+            Board second = new Board(pair[1]);
+            int wrongScores = 0;
+            int otherMoves = 0;
+            try (AlphaBetaSearch reused = new AlphaBetaSearch(16); AlphaBetaSearch fresh = new AlphaBetaSearch(16)) {
+                for (AlphaBetaSearch search : new AlphaBetaSearch[] {reused, fresh}) {
+                    search.setMaxDepth(depth);
+                    search.setTimeBudgetMillis(60_000);
+                }
+                for (int position = 0; position < positions; position++) {
+                    play(first, player, position % (pair[0].getCellCount() / 2 + 1));
+                    play(second, player, position % (pair[1].getCellCount() / 2 + 1));
+                    // only the first rules' entries are left in the table for the search on the second
+                    reused.getTable().clear();
+                    reused.chooseMove(first);
+                    int move = reused.chooseMove(second);
+                    fresh.getTable().clear();
+                    if (fresh.chooseMove(second) != move) otherMoves++;
+                    if (fresh.getStats().getScore() != reused.getStats().getScore()) wrongScores++;
+                }
+            }
+            failures += wrongScores + otherMoves;
+            report.append(String.format("%-10s %-10s %12s %12s%n", pair[0].getName().replace(" ", ""),
+                pair[1].getName().replace(" ", ""), wrongScores + "/" + positions, otherMoves + "/" + positions));
+        }
+
+        PrintStream out = System.out;
+        out.print(report);
+        if (args.length > 2) {
+            Path path = Paths.get(args[2]);
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            Files.write(path, report.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (failures > 0) {
+            throw new IllegalStateException(failures + " search results differ from minimax or a fresh engine");
+        }
+    }
+
+    /** Plays random moves from an empty board until {@code plies} are played or the next one would end the game. */
+    private static void play(Board board, RandomPlayer player, int plies) {
+        board.reset();
+        for (int ply = 0; ply < plies; ply++) {
+            int cell = player.chooseMove(board);
+            if (board.play(cell) != GameState.PLAYING) {
+                board.undo(cell);
+                break;
+            }
+        }
+    }
+
+    /** @return the minimax score of every empty cell, indexed by cell */
+    private static int[] rootScores(Board board, int depth) {
+        int[] scores = new int[board.getCellCount()];
+        for (int cell = board.nextEmpty(0); cell >= 0; cell = board.nextEmpty(cell + 1)) {
+            scores[cell] = scoreMove(board, cell, depth, 0);
+        }
+        return scores;
+    }
+
+    private static int max(Board board, int[] scores) {
+        int best = -INFINITY;
+        for (int cell = board.nextEmpty(0); cell >= 0; cell = board.nextEmpty(cell + 1)) {
+            best = Math.max(best, scores[cell]);
+        }
+        return best;
+    }
+
+    /** Scores a move the way the search does: wins sooner score higher, and leaves are the window balance. */
+    private static int scoreMove(Board board, int cell, int depth, int ply) {
+        GameState state = board.play(cell);
+        int result;
+        if (state == GameState.PLAYING) {
+            result = -minimax(board, depth - 1, ply + 1);
+        } else if (state == GameState.DRAW) {
+            result = 0;
+        } else {
+            result = AlphaBetaSearch.WIN_SCORE - ply - 1;
+        }
+        board.undo(cell);
+        return result;
+    }
+
+    private static int minimax(Board board, int depth, int ply) {
+        if (depth == 0) {
+            int balance = board.getWindowBalance();
+            int result = board.getCurrentPlayer() == Board.X ? balance : -balance;
+            return Math.max(-MAX_EVALUATION, Math.min(MAX_EVALUATION, result));
+        }
+        int best = -INFINITY;
+        for (int cell = board.nextEmpty(0); cell >= 0; cell = board.nextEmpty(cell + 1)) {
+            best = Math.max(best, scoreMove(board, cell, depth, ply));
+        }
+        return best;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the games of a move log written by {@link MoveLogWriter} through a fixed buffer, so logs
+ * of any size are read in constant memory. {@link #next(GameRecord)} refills the caller's record and
+ * only allocates when a game uses different rules than the one before.
+ */
+public final class MoveLogReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final GameState[] RESULTS = GameState.values();
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long gamesRead;
+
+    public static MoveLogReader open(Path file) throws IOException {
+        return new MoveLogReader(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    /** Reads and checks the file header; the channel is closed with the reader. */
+    public MoveLogReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.flip();
+        try {
+            if (!fill(MoveLogWriter.FILE_HEADER_SIZE)
+                || buffer.getInt() != MoveLogWriter.MAGIC || buffer.getInt() != MoveLogWriter.VERSION) {
+                throw new IOException("Not a move log file");
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next game into {@code record}.
+     * @return false at the end of the log
+     * @throws EOFException if the log ends in the middle of a game, for example after a crash while writing
+     */
+    public boolean next(GameRecord record) throws IOException {
+        if (!fill(MoveLogWriter.RECORD_HEADER_SIZE)) {
+            if (buffer.hasRemaining()) throw new EOFException("Truncated game " + gamesRead + " at the end of the move log");
+            return false;
+        }
+        int width = buffer.get() & 0xFF;
+        int height = buffer.get() & 0xFF;
+        int winLength = buffer.get() & 0xFF;
+        int mode = buffer.get() & 0xFF;
+        int result = buffer.get() & 0xFF;
+        int moveCount = buffer.get() & 0xFF;
+        long startMillis = buffer.getLong();
+        long endMillis = buffer.getLong();
+
+        Rules rules = record.getRules();
+        if (rules == null || rules.getWidth() != width || rules.getHeight() != height
+            || rules.getWinLength() != winLength) {
+            try {
+                rules = Rules.of(width, height, winLength);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt game " + gamesRead + " in the move log: " + e.getMessage());
+            }
+        }
+        if (result >= RESULTS.length || moveCount > rules.getCellCount()) {
+            throw new IOException("Corrupt game " + gamesRead + " in the move log");
+        }
+        if (!fill(moveCount)) {
+            throw new EOFException("Truncated game " + gamesRead + " at the end of the move log");
+        }
+        record.set(rules, mode, RESULTS[result], startMillis, endMillis);
+        buffer.get(record.moves(), 0, moveCount);
+        record.setMoveCount(moveCount);
+        gamesRead++;
+        return true;
+    }
+
+    public long getGamesRead() {
+        return gamesRead;
+    }
+
+    /** Reads from the channel until at least {@code bytes} are buffered; false if the channel ends first. */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return true;
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) return false;
+            }
+        } finally {
+            buffer.flip();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,77 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends {@link GameRecord}s to a move log file through a {@link FileChannel}, buffering records
+ * until the buffer fills up or {@link #flush()} is called. Safe to share between threads.
+ * <p>
+ * File layout (big-endian): magic {@code "TTTL"} and a version int, then one record per game:
+ * width, height, win length, mode, result ({@link GameState} ordinal) and move count as unsigned
+ * bytes, start and end time as epoch millis longs, then one byte per move with the cell index.
+ * A record is at most {@value #MAX_RECORD_SIZE} bytes; a 3x3 game takes 22 + 9.
+ * Records are self-contained, so {@link MoveLogReader} can stream any number of them.
+ */
+public final class MoveLogWriter implements Closeable {
+    static final int MAGIC = 0x5454544C;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 22;
+    static final int MAX_RECORD_SIZE = RECORD_HEADER_SIZE + Rules.MAX_CELLS;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /** Opens a log for appending, creating it if it does not exist. */
+    public MoveLogWriter(Path file) throws IOException {
+        if (Files.exists(file) && Files.size(file) > 0) {
+            // opening a reader checks the header; a channel opened for appending cannot read
+            MoveLogReader.open(file).close();
+        } else {
+            buffer.putInt(MAGIC).putInt(VERSION);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public synchronized void append(GameRecord record) throws IOException {
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            flush();
+        }
+        Rules rules = record.getRules();
+        buffer.put((byte) rules.getWidth())
+            .put((byte) rules.getHeight())
+            .put((byte) rules.getWinLength())
+            .put((byte) record.getMode())
+            .put((byte) record.getResult().ordinal())
+            .put((byte) record.getMoveCount())
+            .putLong(record.getStartMillis())
+            .putLong(record.getEndMillis())
+            .put(record.moves(), 0, record.getMoveCount());
+    }
+
+    /** Writes the buffered records to the file. */
+    public synchronized void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
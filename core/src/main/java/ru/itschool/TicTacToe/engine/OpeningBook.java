@@ -0,0 +1,134 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Perfect-play moves for every position of a small board up to a number of plies, stored once per
+ * symmetry class. The file is read once into an open-addressing table so lookups are O(1).
+ * <p>
+ * File layout (big-endian): magic {@code "TTTB"}, version byte, field size byte, covered plies byte,
+ * entry count int, then per entry the canonical key as an int, the best move in canonical orientation
+ * and the score for the side to move as signed bytes. Scores are 0 for a draw, otherwise one more than
+ * the empty cells left after the winning move, {@code cellCount + 1 - moveCount}, positive for a win and
+ * negative for a loss. Entries are sorted by key. Written by {@link OpeningBookGenerator}.
+ */
+public final class OpeningBook {
+    static final int MAGIC = 0x54545442;
+    static final int VERSION = 1;
+
+    private final int size;
+    private final int maxPlies;
+    private final int count;
+    private final int[] keys;
+    private final byte[] moves;
+    private final byte[] scores;
+    private final int mask;
+
+    private OpeningBook(int size, int maxPlies, int count) {
+        this.size = size;
+        this.maxPlies = maxPlies;
+        this.count = count;
+        int capacity = Integer.highestOneBit(Math.max(count, 1) * 2) * 2;
+        keys = new int[capacity];
+        moves = new byte[capacity];
+        scores = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    public static OpeningBook read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+            throw new IOException("Not an opening book file");
+        }
+        int size = in.readUnsignedByte();
+        int maxPlies = in.readUnsignedByte();
+        int count = in.readInt();
+        if (!Symmetry.supports(size)) {
+            throw new IOException("Unsupported field size " + size);
+        }
+        OpeningBook book = new OpeningBook(size, maxPlies, count);
+        for (int i = 0; i < count; i++) {
+            int key = in.readInt();
+            byte move = in.readByte();
+            byte score = in.readByte();
+            book.put(key, move, score);
+        }
+        return book;
+    }
+
+    static void write(OutputStream output, int size, int maxPlies, long[] keys, byte[] moves, byte[] scores, int count)
+        throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(size);
+        out.writeByte(maxPlies);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt((int) keys[i]);
+            out.writeByte(moves[i]);
+            out.writeByte(scores[i]);
+        }
+        out.flush();
+    }
+
+    private void put(int key, byte move, byte score) {
+        // keys are stored inverted so that 0 can mark a free slot; ~key is never 0 for a legal position
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = ~key;
+        moves[slot] = move;
+        scores[slot] = score;
+    }
+
+    private int find(int key) {
+        for (int slot = slot(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == ~key) return slot;
+        }
+        return -1;
+    }
+
+    private int slot(int key) {
+        return (key * 0x9E3779B9 >>> 7) & mask;
+    }
+
+    /** @return the best move for the position, or -1 if it is not in the book */
+    public int findMove(Board board) {
+        if (!covers(board)) return -1;
+        int t = Symmetry.canonicalTransform(size, board.getXBits(), board.getOBits());
+        long key = Symmetry.key(size,
+            Symmetry.transform(size, t, board.getXBits()), Symmetry.transform(size, t, board.getOBits()));
+        int slot = find((int) key);
+        return slot < 0 ? -1 : Symmetry.inverseCell(size, t, moves[slot]);
+    }
+
+    /** @return the score of the position for the side to move, or {@link Integer#MIN_VALUE} if it is not in the book */
+    public int findScore(Board board) {
+        if (!covers(board)) return Integer.MIN_VALUE;
+        int slot = find((int) Symmetry.canonicalKey(size, board.getXBits(), board.getOBits()));
+        return slot < 0 ? Integer.MIN_VALUE : scores[slot];
+    }
+
+    private boolean covers(Board board) {
+        return board.getRules().isClassic() && board.getWidth() == size && board.getMoveCount() <= maxPlies;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxPlies() {
+        return maxPlies;
+    }
+
+    public int getEntryCount() {
+        return count;
+    }
+}
@@ -0,0 +1,185 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Offline generator of the {@link OpeningBook} files. Solves the game exactly with a memoized
+ * negamax over symmetry classes, then writes the best move of every reachable, unfinished position
+ * up to the given number of plies. Run with {@code gradlew :core:generateOpeningBooks}.
+ * <p>
+ * Arguments: {@code <output directory> [4x4 plies]}. The 3x3 book always covers the whole game.
+ */
+public final class OpeningBookGenerator {
+    private static final byte UNKNOWN = Byte.MIN_VALUE;
+
+    private final int size;
+    private final int maxPlies;
+    private final Board board;
+    private final LongByteMap solved = new LongByteMap(1 << 16);
+    private final LongByteMap entries = new LongByteMap(1 << 12);
+
+    private OpeningBookGenerator(int size, int maxPlies) {
+        this.size = size;
+        this.maxPlies = maxPlies;
+        this.board = new Board(size);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "assets");
+        int plies4x4 = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        generate(dir, 3, 9);
+        generate(dir, 4, plies4x4);
+    }
+
+    private static void generate(Path dir, int size, int maxPlies) throws IOException {
+        long start = System.nanoTime();
+        OpeningBookGenerator generator = new OpeningBookGenerator(size, maxPlies);
+        generator.collect();
+        Path file = dir.resolve("book" + size + "x" + size + ".bin");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            generator.write(out);
+        }
+        System.out.printf("%s: %d positions up to ply %d (%d solved), %d bytes, %.1f s%n",
+            file, generator.entries.size(), maxPlies, generator.solved.size(), Files.size(file),
+            (System.nanoTime() - start) / 1e9);
+    }
+
+    /** Visits every reachable unfinished position up to {@code maxPlies} and records its best move. */
+    private void collect() {
+        long key = Symmetry.canonicalKey(size, board.getXBits(), board.getOBits());
+        if (entries.get(key) != UNKNOWN) return;
+
+        int t = Symmetry.canonicalTransform(size, board.getXBits(), board.getOBits());
+        int bestScore = Integer.MIN_VALUE;
+        int bestMove = -1;
+        for (int cell = board.nextEmpty(0); cell >= 0; cell = board.nextEmpty(cell + 1)) {
+            int score = scoreMove(cell);
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = cell;
+            }
+        }
+        entries.put(key, (byte) Symmetry.transformCell(size, t, bestMove), (byte) bestScore);
+
+        if (board.getMoveCount() + 1 > maxPlies) return;
+        for (int cell = board.nextEmpty(0); cell >= 0; cell = board.nextEmpty(cell + 1)) {
+            if (board.play(cell) == GameState.PLAYING) {
+                collect();
+            }
+            board.undo(cell);
+        }
+    }
+
+    /** Exact score for the side to move: 0 for a draw, otherwise larger for faster wins. */
+    private int solve() {
+        long key = Symmetry.canonicalKey(size, board.getXBits(), board.getOBits());
+        byte known = solved.get(key);
+        if (known != UNKNOWN) return known;
+
+        int best = Integer.MIN_VALUE;
+        for (int cell = board.nextEmpty(0); cell >= 0; cell = board.nextEmpty(cell + 1)) {
+            best = Math.max(best, scoreMove(cell));
+        }
+        solved.put(key, (byte) best, (byte) 0);
+        return best;
+    }
+
+    private int scoreMove(int cell) {
+        GameState state = board.play(cell);
+        int score;
+        if (state == GameState.PLAYING) {
+            score = -solve();
+        } else if (state == GameState.DRAW) {
+            score = 0;
+        } else {
+            score = board.getCellCount() + 1 - board.getMoveCount();
+        }
+        board.undo(cell);
+        return score;
+    }
+
+    private void write(OutputStream out) throws IOException {
+        int count = entries.size();
+        long[] keys = new long[count];
+        int n = 0;
+        for (int slot = 0; slot < entries.keys.length; slot++) {
+            if (entries.used[slot]) keys[n++] = entries.keys[slot];
+        }
+        Arrays.sort(keys);
+        byte[] moves = new byte[count];
+        byte[] scores = new byte[count];
+        for (int i = 0; i < count; i++) {
+            int slot = entries.find(keys[i]);
+            moves[i] = entries.values[slot];
+            scores[i] = entries.extra[slot];
+        }
+        OpeningBook.write(out, size, maxPlies, keys, moves, scores, count);
+    }
+
+    /** Growable open-addressing map from position keys to two bytes. */
+    private static final class LongByteMap {
+        long[] keys;
+        byte[] values;
+        byte[] extra;
+        boolean[] used;
+        private int size;
+
+        LongByteMap(int capacity) {
+            keys = new long[capacity];
+            values = new byte[capacity];
+            extra = new byte[capacity];
+            used = new boolean[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int find(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        byte get(long key) {
+            int slot = find(key);
+            return used[slot] ? values[slot] : UNKNOWN;
+        }
+
+        void put(long key, byte value, byte extraValue) {
+            if (size * 2 >= keys.length) grow();
+            int slot = find(key);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+            extra[slot] = extraValue;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            byte[] oldValues = values;
+            byte[] oldExtra = extra;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new byte[keys.length];
+            extra = new byte[keys.length];
+            used = new boolean[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) put(oldKeys[i], oldValues[i], oldExtra[i]);
+            }
+        }
+    }
+}
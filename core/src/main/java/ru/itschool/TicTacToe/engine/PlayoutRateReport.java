@@ -0,0 +1,85 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prints playouts per second of {@link MctsSearch}, in total and per core, on the 7x7, 10x10 and 15x15
+ * presets after one move in the centre, for 1, 2, 4, ... threads up to the number of available processors.
+ * Every run searches for a fixed time and the median of several runs is reported.
+ * Run with {@code gradlew :core:playoutReport}.
+ * <p>
+ * Arguments: {@code [runs] [milliseconds per run] [output file]}.
+ */
+public final class PlayoutRateReport {
+    private static final Rules[] RULES = {Rules.of(7, 7, 4), Rules.of(10, 10, 5), Rules.of(15, 15, 5)};
+
+    private PlayoutRateReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        StringBuilder report = new StringBuilder();
+        int processors = Runtime.getRuntime().availableProcessors();
+        report.append(String.format("MCTS playout rate, %d available processors, %d ms per run, median of %d runs%n",
+            processors, millis, runs));
+        report.append(String.format("%-10s %-8s %14s %16s %10s %10s%n",
+            "rules", "threads", "playouts/s", "per core", "scaling", "depth"));
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < processors; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(processors);
+
+        for (Rules rules : RULES) {
+            Board board = new Board(rules);
+            board.play(board.cellIndex(rules.getHeight() / 2, rules.getWidth() / 2));
+            double baseRate = 0;
+            for (int threads : threadCounts) {
+                double[] rates = new double[runs];
+                double[] perCore = new double[runs];
+                int depth = 0;
+                try (MctsSearch search = new MctsSearch(20)) {
+                    search.setThreads(threads);
+                    search.setTimeBudgetMillis(millis);
+                    // one untimed search to warm up the JIT and the helper threads
+                    search.chooseMove(board);
+                    for (int run = 0; run < runs; run++) {
+                        search.chooseMove(board);
+                        SearchStats stats = search.getStats();
+                        rates[run] = stats.getPlayouts() * 1e9 / stats.getElapsedNanos();
+                        perCore[run] = stats.getPlayoutsPerSecondPerCore();
+                        depth = Math.max(depth, stats.getDepth());
+                    }
+                }
+                double medianRate = median(rates);
+                if (threads == 1) baseRate = medianRate;
+                report.append(String.format("%-10s %-8d %14.0f %16.0f %10.2f %10d%n",
+                    rules.getName().replace(" ", ""), threads, medianRate, median(perCore), medianRate / baseRate, depth));
+            }
+        }
+
+        PrintStream out = System.out;
+        out.print(report);
+        if (args.length > 2) {
+            Path path = Paths.get(args[2]);
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            Files.write(path, report.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,33 @@
+package ru.itschool.TicTacToe.engine;
+
+/** Plays a uniformly random empty cell; a baseline opponent for simulations. */
+public final class RandomPlayer implements AIPlayer {
+    private long state;
+
+    public RandomPlayer(long seed) {
+        setSeed(seed);
+    }
+
+    public void setSeed(long seed) {
+        // xorshift must not start from 0
+        state = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+    }
+
+    @Override
+    public int chooseMove(Board board) {
+        int empty = board.getCellCount() - board.getMoveCount();
+        int skip = (int) ((nextLong() >>> 33) % empty);
+        int cell = board.nextEmpty(0);
+        while (skip-- > 0) {
+            cell = board.nextEmpty(cell + 1);
+        }
+        return cell;
+    }
+
+    private long nextLong() {
+        state ^= state << 13;
+        state ^= state >>> 7;
+        state ^= state << 17;
+        return state * 0x2545F4914F6CDD1DL;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Board dimensions and the number of pieces in a row needed to win, from classic 3x3 up to
+ * 15x15 gomoku. Also precomputes every window of {@code winLength} consecutive cells and the
+ * windows through each cell, which {@link Board} keeps counters for.
+ */
+public final class Rules {
+    public static final int MIN_SIZE = 3;
+    public static final int MAX_SIZE = 15;
+    public static final int MAX_CELLS = MAX_SIZE * MAX_SIZE;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    /** Field presets offered in the menu. */
+    public static final List<Rules> PRESETS = Collections.unmodifiableList(Arrays.asList(
+        classic(3), classic(4), classic(5), of(7, 7, 4), of(10, 10, 5), of(15, 15, 5)));
+
+    private final int width;
+    private final int height;
+    private final int winLength;
+    private final int[] windows;
+    private final int windowCount;
+    private final int[] cellWindowStarts;
+    private final int[] cellWindows;
+
+    private Rules(int width, int height, int winLength) {
+        if (width < MIN_SIZE || width > MAX_SIZE || height < MIN_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException("Field must be between " + MIN_SIZE + " and " + MAX_SIZE
+                + " cells on each side: " + width + "x" + height);
+        }
+        if (winLength < MIN_SIZE || winLength > Math.max(width, height)) {
+            throw new IllegalArgumentException("Win length " + winLength + " does not fit a " + width + "x" + height + " field");
+        }
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+
+        int count = 0;
+        int[] cells = new int[4 * width * height * winLength];
+        for (int[] direction : DIRECTIONS) {
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    int endRow = row + direction[0] * (winLength - 1);
+                    int endCol = col + direction[1] * (winLength - 1);
+                    if (endRow < 0 || endRow >= height || endCol < 0 || endCol >= width) continue;
+                    for (int i = 0; i < winLength; i++) {
+                        cells[count * winLength + i] = (row + direction[0] * i) * width + col + direction[1] * i;
+                    }
+                    count++;
+                }
+            }
+        }
+        this.windows = Arrays.copyOf(cells, count * winLength);
+        this.windowCount = count;
+
+        // windows through each cell, as a flat list with a start offset per cell
+        cellWindowStarts = new int[width * height + 1];
+        for (int i = 0; i < windows.length; i++) {
+            cellWindowStarts[windows[i] + 1]++;
+        }
+        for (int cell = 0; cell < width * height; cell++) {
+            cellWindowStarts[cell + 1] += cellWindowStarts[cell];
+        }
+        cellWindows = new int[windows.length];
+        int[] next = Arrays.copyOf(cellWindowStarts, width * height);
+        for (int i = 0; i < windows.length; i++) {
+            cellWindows[next[windows[i]]++] = i / winLength;
+        }
+    }
+
+    public static Rules of(int width, int height, int winLength) {
+        return new Rules(width, height, winLength);
+    }
+
+    /** Parses the {@link #getName()} format: {@code "3x3"} for classic rules or {@code "15x15 / 5"}. */
+    public static Rules parse(String name) {
+        String[] parts = name.replace(" ", "").toLowerCase().split("[x/]");
+        try {
+            if (parts.length == 2) {
+                int width = Integer.parseInt(parts[0]);
+                int height = Integer.parseInt(parts[1]);
+                return width == height ? classic(width) : of(width, height, Math.min(width, height));
+            }
+            if (parts.length == 3) {
+                return of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Expected rules like 3x3 or 15x15/5: " + name);
+    }
+
+    /** Square field where a whole row, column or diagonal wins. */
+    public static Rules classic(int size) {
+        return new Rules(size, size, size);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int getCellCount() {
+        return width * height;
+    }
+
+    public boolean isClassic() {
+        return width == height && winLength == width;
+    }
+
+    public int getWindowCount() {
+        return windowCount;
+    }
+
+    /** Cells of every winning window, {@link #getWinLength()} consecutive entries per window; shared, not copied. */
+    int[] windows() {
+        return windows;
+    }
+
+    /** Offset into {@link #cellWindows()} of each cell's windows, plus the total at the end; shared, not copied. */
+    int[] cellWindowStarts() {
+        return cellWindowStarts;
+    }
+
+    /** Indices of the windows through each cell, grouped by cell; shared, not copied. */
+    int[] cellWindows() {
+        return cellWindows;
+    }
+
+    public String getName() {
+        return isClassic() ? width + "x" + height : width + "x" + height + " / " + winLength;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Rules)) return false;
+        Rules rules = (Rules) o;
+        return width == rules.width && height == rules.height && winLength == rules.winLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return (width * 31 + height) * 31 + winLength;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + ", " + winLength + " in a row";
+    }
+}
@@ -0,0 +1,25 @@
+package ru.itschool.TicTacToe.engine;
+
+/**
+ * An {@link AIPlayer} that thinks within a time budget, can be stopped from another thread and
+ * reports what it did; {@link AlphaBetaSearch} and {@link MctsSearch} are interchangeable behind it.
+ */
+public interface SearchEngine extends AIPlayer, AutoCloseable {
+    void setTimeBudgetMillis(long timeBudgetMillis);
+
+    /** Sets the longest a move may take whatever the budget, 0 for no cap. */
+    void setLatencyCapMillis(long latencyCapMillis);
+
+    /** Sets the number of search threads, including the calling one. */
+    void setThreads(int threads);
+
+    /** Asks a running {@link #chooseMove(Board)} to return as soon as possible. */
+    void stop();
+
+    /** Statistics of the last {@link #chooseMove(Board)} call, summed over all threads. */
+    SearchStats getStats();
+
+    /** Shuts down the helper threads; they are started again by the next search if needed. */
+    @Override
+    void close();
+}
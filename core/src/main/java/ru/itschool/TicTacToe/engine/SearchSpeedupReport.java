@@ -0,0 +1,88 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prints time-to-depth and nodes per second of {@link AlphaBetaSearch} from the empty 3x3, 4x4 and
+ * 5x5 boards for 1, 2, 4, ... threads up to the number of available processors.
+ * Every search starts from a cleared table and the median of several runs is reported, so the
+ * numbers are repeatable on the same machine. Run with {@code gradlew :core:speedupReport}.
+ * <p>
+ * Arguments: {@code [runs] [output file]}.
+ */
+public final class SearchSpeedupReport {
+    private static final int[] SIZES = {3, 4, 5};
+    /** Depth reached by each size in well under a second on one core. */
+    private static final int[] DEPTHS = {9, 11, 7};
+
+    private SearchSpeedupReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        StringBuilder report = new StringBuilder();
+        int processors = Runtime.getRuntime().availableProcessors();
+        report.append(String.format("Lazy SMP speedup, %d available processors, median of %d runs%n", processors, runs));
+        report.append(String.format("%-5s %-6s %-8s %12s %14s %10s %10s%n",
+            "size", "depth", "threads", "time ms", "nodes/s", "speedup", "nps x"));
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < processors; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(processors);
+
+        for (int i = 0; i < SIZES.length; i++) {
+            double baseMillis = 0;
+            double baseNps = 0;
+            for (int threads : threadCounts) {
+                double[] millis = new double[runs];
+                double[] nps = new double[runs];
+                try (AlphaBetaSearch search = new AlphaBetaSearch(20)) {
+                    search.setThreads(threads);
+                    search.setMaxDepth(DEPTHS[i]);
+                    search.setTimeBudgetMillis(3_600_000);
+                    // one untimed search to warm up the JIT and the helper threads
+                    search.chooseMove(new Board(SIZES[i]));
+                    for (int run = 0; run < runs; run++) {
+                        search.getTable().clear();
+                        search.chooseMove(new Board(SIZES[i]));
+                        millis[run] = search.getStats().getElapsedNanos() / 1e6;
+                        nps[run] = search.getStats().getNodesPerSecond();
+                    }
+                }
+                double medianMillis = median(millis);
+                double medianNps = median(nps);
+                if (threads == 1) {
+                    baseMillis = medianMillis;
+                    baseNps = medianNps;
+                }
+                report.append(String.format("%-5s %-6d %-8d %12.2f %14.0f %10.2f %10.2f%n",
+                    SIZES[i] + "x" + SIZES[i], DEPTHS[i], threads, medianMillis, medianNps,
+                    baseMillis / medianMillis, medianNps / baseNps));
+            }
+        }
+
+        PrintStream out = System.out;
+        out.print(report);
+        if (args.length > 1) {
+            Path path = Paths.get(args[1]);
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            Files.write(path, report.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
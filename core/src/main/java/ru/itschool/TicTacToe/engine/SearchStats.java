@@ -0,0 +1,103 @@
+package ru.itschool.TicTacToe.engine;
+
+/** Counters of the last completed search, used to tune the engine. */
+public final class SearchStats {
+    long nodes;
+    long elapsedNanos;
+    long ttProbes;
+    long ttHits;
+    /** Random games played to the end by {@link MctsSearch}; 0 for alpha-beta. */
+    long playouts;
+    int threads = 1;
+    boolean monteCarlo;
+    int depth;
+    int score;
+    int bestMove = -1;
+    boolean fromBook;
+
+    void reset() {
+        nodes = 0;
+        elapsedNanos = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        playouts = 0;
+        threads = 1;
+        monteCarlo = false;
+        depth = 0;
+        score = 0;
+        bestMove = -1;
+        fromBook = false;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    public double getTtHitRate() {
+        return ttProbes == 0 ? 0 : (double) ttHits / ttProbes;
+    }
+
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /** Playouts per second of one search thread, which is one core when there are enough of them. */
+    public double getPlayoutsPerSecondPerCore() {
+        return elapsedNanos == 0 ? 0 : playouts * 1e9 / elapsedNanos / threads;
+    }
+
+    /** Deepest fully searched iteration; for {@link MctsSearch}, the deepest tree node reached. */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Score of the best move from the mover's point of view. {@link AlphaBetaSearch} reports evaluation
+     * points, or {@code WIN_SCORE} less the plies up to and including the winning move once a win is found,
+     * negated for a loss; book moves are scored the same way. {@link MctsSearch} reports its expected result
+     * from -1000, a sure loss, to 1000, a sure win, or a win or loss score once the move is proven.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /** Whether the move was chosen by {@link MctsSearch}. */
+    public boolean isMonteCarlo() {
+        return monteCarlo;
+    }
+
+    /** Whether the move came from the opening book rather than a search. */
+    public boolean isFromBook() {
+        return fromBook;
+    }
+
+    @Override
+    public String toString() {
+        if (fromBook) {
+            return String.format("book move, score %d, %.3f ms", score, elapsedNanos / 1e6);
+        }
+        if (monteCarlo) {
+            return String.format("MCTS depth %d, score %d, %d playouts and %d nodes in %.1f ms on %d threads"
+                + " (%.0f playouts/s per core)", depth, score, playouts, nodes, elapsedNanos / 1e6, threads,
+                getPlayoutsPerSecondPerCore());
+        }
+        return String.format("depth %d, score %d, %d nodes in %.1f ms (%.0f nps), TT hit rate %.1f%%",
+            depth, score, nodes, elapsedNanos / 1e6, getNodesPerSecond(), getTtHitRate() * 100);
+    }
+}
@@ -0,0 +1,149 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Saves and resumes random in-progress games on every preset field through a {@link SnapshotStore} in a
+ * temporary folder, checks that each resumed game matches the one saved, and prints the largest snapshot and
+ * the median and worst time to encode it on pause, to write it on the writer thread and to read it back
+ * and replay the board on launch. Fails if a game does not survive the round trip or if resuming ever
+ * takes longer than a 60 Hz frame. Run with {@code gradlew :core:snapshotReport}.
+ * <p>
+ * Arguments: {@code [games per field and fill] [output file]}.
+ */
+public final class SnapshotReport {
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+    /** How full the field is when the game is paused. */
+    private static final int[] FILL_PERCENT = {10, 50, 90};
+
+    private SnapshotReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Game snapshot round trip, %d games per field and fill, times in us as median / worst%n",
+            games));
+        report.append(String.format("%-10s %-6s %6s %15s %15s %15s%n",
+            "rules", "fill", "max B", "encode", "write", "resume"));
+
+        Path folder = Files.createTempDirectory("snapshots");
+        SnapshotStore store = new SnapshotStore(folder, (message, e) -> System.err.println(message + ": " + e));
+        RandomPlayer player = new RandomPlayer(42);
+        Difficulty[] difficulties = Difficulty.values();
+        long worstResume = 0;
+        try {
+            for (Rules rules : Rules.PRESETS) {
+                Board board = new Board(rules);
+                Board resumed = new Board(rules);
+                int[] cells = new int[rules.getCellCount()];
+                for (int fill : FILL_PERCENT) {
+                    long[] encode = new long[games];
+                    long[] write = new long[games];
+                    long[] resume = new long[games];
+                    int bytes = 0;
+                    for (int game = 0; game < games; game++) {
+                        int moveCount = play(board, player, cells, Math.max(1, rules.getCellCount() * fill / 100));
+                        // some games have taken moves back, and every other one is against the AI
+                        int redoCount = Math.min(game % 3, moveCount);
+                        moveCount -= redoCount;
+                        for (int i = redoCount - 1; i >= 0; i--) {
+                            board.undo(cells[moveCount + i]);
+                        }
+                        Difficulty difficulty = game % 2 == 0 ? null : difficulties[game % difficulties.length];
+                        int mode = difficulty == null ? GameRecord.MODE_HOTSEAT : GameRecord.MODE_VS_AI;
+                        long startMillis = System.currentTimeMillis();
+
+                        long start = System.nanoTime();
+                        byte[] snapshot = new GameSnapshot(rules, mode, difficulty, game % 4 == 1, startMillis,
+                            cells, moveCount, redoCount).toBytes();
+                        encode[game] = System.nanoTime() - start;
+                        bytes = Math.max(bytes, snapshot.length);
+
+                        start = System.nanoTime();
+                        store.write(snapshot);
+                        write[game] = System.nanoTime() - start;
+
+                        start = System.nanoTime();
+                        GameSnapshot read = store.read();
+                        read.replay(resumed);
+                        resume[game] = System.nanoTime() - start;
+
+                        check(read, resumed, board, rules, mode, difficulty, game % 4 == 1, startMillis, cells,
+                            moveCount, redoCount);
+                    }
+                    long[] resumeSorted = sorted(resume);
+                    worstResume = Math.max(worstResume, resumeSorted[games - 1]);
+                    report.append(String.format("%-10s %-6s %6d %15s %15s %15s%n",
+                        rules.getName().replace(" ", ""), fill + "%", bytes,
+                        times(sorted(encode)), times(sorted(write)), times(resumeSorted)));
+                }
+            }
+        } finally {
+            store.close();
+            Files.deleteIfExists(folder.resolve("game.bin"));
+            Files.deleteIfExists(folder);
+        }
+        report.append(String.format("worst resume %.1f us, frame budget %.1f us%n", worstResume / 1000.0,
+            FRAME_NANOS / 1000.0));
+
+        PrintStream out = System.out;
+        out.print(report);
+        if (args.length > 1) {
+            Path path = Paths.get(args[1]);
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            Files.write(path, report.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (worstResume > FRAME_NANOS) {
+            throw new IllegalStateException("Resuming a game took longer than a frame");
+        }
+    }
+
+    /** Plays random moves from an empty board until {@code plies} are played or the next one would end the game. */
+    private static int play(Board board, RandomPlayer player, int[] cells, int plies) {
+        board.reset();
+        int moveCount = 0;
+        while (moveCount < plies) {
+            int cell = player.chooseMove(board);
+            if (board.play(cell) != GameState.PLAYING) {
+                board.undo(cell);
+                break;
+            }
+            cells[moveCount++] = cell;
+        }
+        return moveCount;
+    }
+
+    private static void check(GameSnapshot read, Board resumed, Board board, Rules rules, int mode,
+                              Difficulty difficulty, boolean monteCarlo, long startMillis, int[] cells,
+                              int moveCount, int redoCount) {
+        boolean same = read.getRules().equals(rules) && read.getMode() == mode && read.getDifficulty() == difficulty
+            && read.isMonteCarlo() == monteCarlo && read.getStartMillis() == startMillis
+            && read.getMoveCount() == moveCount && read.getRedoCount() == redoCount
+            && resumed.getCurrentPlayer() == board.getCurrentPlayer() && resumed.getState() == board.getState()
+            && resumed.getHash() == board.getHash();
+        for (int i = 0; same && i < moveCount + redoCount; i++) {
+            same = read.getCell(i) == cells[i];
+        }
+        for (int cell = 0; same && cell < rules.getCellCount(); cell++) {
+            same = resumed.get(cell) == board.get(cell);
+        }
+        if (!same) throw new IllegalStateException("A " + rules.getName() + " game did not survive the round trip");
+    }
+
+    private static long[] sorted(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static String times(long[] sorted) {
+        return String.format("%.1f / %.1f", sorted[sorted.length / 2] / 1000.0, sorted[sorted.length - 1] / 1000.0);
+    }
+}
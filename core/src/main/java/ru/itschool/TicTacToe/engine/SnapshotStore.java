@@ -0,0 +1,94 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps the {@link GameSnapshot} of the game in progress in one file of a folder. {@link #save} and
+ * {@link #clear} only encode on the caller's thread; a background thread writes the file, so pausing the
+ * app never waits for the disk. The file is written next to the old one and moved over it, so a process
+ * killed mid-write leaves the previous snapshot. It is not synced: the page cache outlives the process,
+ * and after a power loss a damaged file fails {@link GameSnapshot#fromBytes} and the game starts afresh.
+ */
+public final class SnapshotStore implements Closeable {
+    private static final String FILE = "game.bin";
+
+    private final Path file;
+    private final Path tempFile;
+    private final BiConsumer<String, Throwable> errorLog;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** @param errorLog receives the message and cause of each failed background write, on the writer thread */
+    public SnapshotStore(Path folder, BiConsumer<String, Throwable> errorLog) {
+        file = folder.resolve(FILE);
+        tempFile = folder.resolve(FILE + ".tmp");
+        this.errorLog = errorLog;
+    }
+
+    /**
+     * Reads the saved game on the caller's thread; it is a few dozen bytes, well within a frame.
+     * @return the saved game, or null if there is none
+     * @throws IOException if the file cannot be read or is not a game this version can resume
+     */
+    public GameSnapshot read() throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return GameSnapshot.fromBytes(bytes);
+    }
+
+    /** Replaces the saved game. Returns at once; the snapshot reaches the disk on the writer thread. */
+    public void save(GameSnapshot snapshot) {
+        byte[] bytes = snapshot.toBytes();
+        writer.execute(() -> {
+            try {
+                write(bytes);
+            } catch (IOException e) {
+                errorLog.accept("Could not write " + file, e);
+            }
+        });
+    }
+
+    /** Forgets the saved game, for example once it has finished or was left. Returns at once. */
+    public void clear() {
+        writer.execute(() -> {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                errorLog.accept("Could not delete " + file, e);
+            }
+        });
+    }
+
+    /** Writes the file on the caller's thread; the writer thread and the report use it. */
+    void write(byte[] bytes) throws IOException {
+        Files.write(tempFile, bytes);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Finishes the queued writes and stops the writer thread. */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps {@link GameStats} per mode and rules in memory and persists every result in two files:
+ * a snapshot of the totals and an append-only log of the results since. Loading reads the snapshot and
+ * replays the log, which compaction keeps short, so it takes milliseconds however many games were played.
+ * <p>
+ * {@link #record} only updates memory and queues the result; a background thread appends the queue to
+ * the log in batches, at most every {@value #FLUSH_DELAY_MILLIS} ms, and folds the log into a new
+ * snapshot once it has {@value #COMPACT_ENTRIES} results. The caller never waits for the disk except in
+ * {@link #close()}.
+ * <p>
+ * Each log starts with a generation number and each snapshot names the generation it covers, so a crash
+ * between writing a snapshot and starting the next log cannot count results twice. File layouts are
+ * big-endian: the log is {@code "TTTR"}, version and generation, then {@value #ENTRY_SIZE} bytes per result
+ * (mode, width, height, win length, result ordinal, local side + 1, move count short, time long). The snapshot
+ * is {@code "TTTS"}, version, covered generation and a count, then one block per {@link GameStats}.
+ */
+public final class StatsStore implements Closeable {
+    static final int LOG_MAGIC = 0x54545452;
+    static final int SNAPSHOT_MAGIC = 0x54545453;
+    static final int VERSION = 1;
+    static final int LOG_HEADER_SIZE = 16;
+    static final int ENTRY_SIZE = 16;
+    static final int COMPACT_ENTRIES = 4096;
+    static final long FLUSH_DELAY_MILLIS = 2000;
+
+    private static final String LOG = "stats.log";
+    private static final String SNAPSHOT = "stats.bin";
+    private static final GameState[] RESULTS = GameState.values();
+
+    private final Path logFile;
+    private final Path snapshotFile;
+    private final BiConsumer<String, Throwable> errorLog;
+    private final Map<Integer, GameStats> totals = new HashMap<>();
+    private final Map<Integer, Rules> rulesCache = new HashMap<>();
+    private final long loadNanos;
+
+    // guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(ENTRY_SIZE * 64);
+    private boolean flushQueued;
+
+    // only used on the writer thread after loading
+    private long generation;
+    private long logEntries;
+    private FileChannel log;
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "stats-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Loads the stats kept in a folder, starting empty if there are none yet.
+     * @param errorLog receives the message and cause of each failed background write, on the writer thread
+     */
+    public StatsStore(Path folder, BiConsumer<String, Throwable> errorLog) throws IOException {
+        long start = System.nanoTime();
+        this.errorLog = errorLog;
+        // close() writes a batch still waiting for its delay itself
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        logFile = folder.resolve(LOG);
+        snapshotFile = folder.resolve(SNAPSHOT);
+        long covered = readSnapshot();
+        generation = covered + 1;
+        readLog(covered);
+        loadNanos = System.nanoTime() - start;
+    }
+
+    private long readSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) return 0;
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+        if (in.remaining() < 20 || in.getInt() != SNAPSHOT_MAGIC || in.getInt() != VERSION) {
+            throw new IOException("Not a stats file: " + snapshotFile);
+        }
+        long covered = in.getLong();
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            int mode = in.get() & 0xFF;
+            Rules rules = rules(in.get() & 0xFF, in.get() & 0xFF, in.get() & 0xFF);
+            GameStats stats = new GameStats(mode, rules);
+            stats.games = in.getInt();
+            stats.xWins = in.getInt();
+            stats.oWins = in.getInt();
+            stats.draws = in.getInt();
+            stats.wins = in.getInt();
+            stats.losses = in.getInt();
+            stats.streak = in.getInt();
+            stats.bestStreak = in.getInt();
+            stats.fastestWin = in.getInt();
+            stats.lastPlayedMillis = in.getLong();
+            totals.put(key(mode, rules), stats);
+        }
+        return covered;
+    }
+
+    /** Replays the log if it is newer than the snapshot; a log the snapshot already covers is left for compaction. */
+    private void readLog(long covered) throws IOException {
+        if (!Files.exists(logFile)) return;
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < LOG_HEADER_SIZE) return;
+            ByteBuffer in = ByteBuffer.allocate((int) Math.min(size, 64 * 1024));
+            readFully(channel, in, LOG_HEADER_SIZE);
+            if (in.getInt() != LOG_MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a stats log: " + logFile);
+            }
+            long logGeneration = in.getLong();
+            if (logGeneration <= covered) return;
+            generation = logGeneration;
+            // a result cut short by a crash is dropped and overwritten by the next one
+            long entries = (size - LOG_HEADER_SIZE) / ENTRY_SIZE;
+            long left = entries;
+            while (left > 0) {
+                int batch = (int) Math.min(left, in.capacity() / ENTRY_SIZE);
+                in.clear();
+                readFully(channel, in, batch * ENTRY_SIZE);
+                for (int i = 0; i < batch; i++) {
+                    apply(in);
+                }
+                left -= batch;
+            }
+            logEntries = entries;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer in, int bytes) throws IOException {
+        in.clear().limit(bytes);
+        while (in.hasRemaining()) {
+            if (channel.read(in) < 0) throw new IOException("Stats log ended early");
+        }
+        in.flip();
+    }
+
+    private void apply(ByteBuffer in) throws IOException {
+        int mode = in.get() & 0xFF;
+        int width = in.get() & 0xFF;
+        int height = in.get() & 0xFF;
+        int winLength = in.get() & 0xFF;
+        int result = in.get() & 0xFF;
+        int localSide = in.get() - 1;
+        int moveCount = in.getShort();
+        long timeMillis = in.getLong();
+        if (result >= RESULTS.length) throw new IOException("Corrupt stats log: " + logFile);
+        Rules rules = rules(width, height, winLength);
+        totals.computeIfAbsent(key(mode, rules), key -> new GameStats(mode, rules))
+            .add(RESULTS[result], localSide, moveCount, timeMillis);
+    }
+
+    private Rules rules(int width, int height, int winLength) throws IOException {
+        Integer packed = (width << 16) | (height << 8) | winLength;
+        Rules rules = rulesCache.get(packed);
+        if (rules == null) {
+            try {
+                rules = Rules.of(width, height, winLength);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt stats: " + e.getMessage());
+            }
+            rulesCache.put(packed, rules);
+        }
+        return rules;
+    }
+
+    private static int key(int mode, Rules rules) {
+        return (mode << 24) | (rules.getWidth() << 16) | (rules.getHeight() << 8) | rules.getWinLength();
+    }
+
+    /**
+     * Counts a finished game. Returns at once; the result reaches the disk on the next batch.
+     * @param mode one of the {@code GameRecord.MODE_} constants
+     * @param localSide the side of the player on this device, or {@link Board#EMPTY} for hotseat games
+     * @return the updated stats for the mode and rules, as a copy
+     */
+    public synchronized GameStats record(int mode, Rules rules, GameState result, int localSide, int moveCount,
+                                         long timeMillis) {
+        if (result == GameState.PLAYING) throw new IllegalArgumentException("The game is not finished");
+        GameStats stats = totals.computeIfAbsent(key(mode, rules), key -> new GameStats(mode, rules));
+        stats.add(result, localSide, moveCount, timeMillis);
+
+        if (pending.remaining() < ENTRY_SIZE) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            pending = larger.put(pending);
+        }
+        pending.put((byte) mode)
+            .put((byte) rules.getWidth())
+            .put((byte) rules.getHeight())
+            .put((byte) rules.getWinLength())
+            .put((byte) result.ordinal())
+            .put((byte) (localSide + 1))
+            .putShort((short) moveCount)
+            .putLong(timeMillis);
+        if (!flushQueued) {
+            flushQueued = true;
+            writer.schedule(this::writeBatch, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return new GameStats(stats);
+    }
+
+    /** @return a copy of the stats for a mode and rules, or null if no such game was finished */
+    public synchronized GameStats get(int mode, Rules rules) {
+        GameStats stats = totals.get(key(mode, rules));
+        return stats == null ? null : new GameStats(stats);
+    }
+
+    /** @return copies of all stats, most recently played first */
+    public synchronized List<GameStats> getAll() {
+        List<GameStats> all = new ArrayList<>(totals.size());
+        for (GameStats stats : totals.values()) {
+            all.add(new GameStats(stats));
+        }
+        all.sort(Comparator.comparingLong(GameStats::getLastPlayedMillis).reversed());
+        return all;
+    }
+
+    /** @return how long the constructor took to load the stats */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /** Writes the queued results on the writer thread without waiting, for example when the app is paused. */
+    public void flush() {
+        writer.execute(this::writeBatch);
+    }
+
+    /** Runs on the writer thread. */
+    private void writeBatch() {
+        ByteBuffer batch;
+        Map<Integer, GameStats> compacted = null;
+        synchronized (this) {
+            flushQueued = false;
+            if (pending.position() == 0) return;
+            batch = pending;
+            pending = ByteBuffer.allocate(batch.capacity());
+            // the copy covers exactly the results written so far plus this batch
+            if (logEntries + batch.position() / ENTRY_SIZE >= COMPACT_ENTRIES) {
+                compacted = new HashMap<>();
+                for (Map.Entry<Integer, GameStats> entry : totals.entrySet()) {
+                    compacted.put(entry.getKey(), new GameStats(entry.getValue()));
+                }
+            }
+        }
+        batch.flip();
+        try {
+            if (log == null) openLog();
+            while (batch.hasRemaining()) {
+                log.write(batch);
+            }
+        } catch (IOException e) {
+            // whole results written before the failure stay in the log, and reopening it drops a cut-short one;
+            // the rest go back to the front of the queue and are retried with the next batch
+            logEntries += batch.position() / ENTRY_SIZE;
+            batch.position(batch.position() - batch.position() % ENTRY_SIZE);
+            requeue(batch);
+            dropLog();
+            errorLog.accept("Could not write " + logFile, e);
+            return;
+        }
+        logEntries += batch.limit() / ENTRY_SIZE;
+        if (compacted == null) return;
+        try {
+            compact(compacted);
+        } catch (IOException e) {
+            // the log still holds every result, and compaction is tried again with the next batch
+            errorLog.accept("Could not compact " + snapshotFile, e);
+        }
+    }
+
+    /** Puts results that could not be written in front of those queued since. */
+    private synchronized void requeue(ByteBuffer batch) {
+        int size = batch.remaining() + pending.position();
+        ByteBuffer queue = ByteBuffer.allocate(Math.max(pending.capacity(), size + ENTRY_SIZE));
+        pending.flip();
+        pending = queue.put(batch).put(pending);
+    }
+
+    /** Forgets a log channel that failed; the next batch opens the file again. */
+    private void dropLog() {
+        if (log == null) return;
+        try {
+            log.close();
+        } catch (IOException e) {
+            // the channel is already unusable, closing it only releases the descriptor
+        }
+        log = null;
+    }
+
+    /** Opens the current generation's log for appending, starting it if it does not exist or is stale. */
+    private void openLog() throws IOException {
+        boolean current = false;
+        if (Files.exists(logFile) && Files.size(logFile) >= LOG_HEADER_SIZE) {
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+                readFully(channel, header, LOG_HEADER_SIZE);
+                current = header.getInt(0) == LOG_MAGIC && header.getLong(8) == generation;
+            }
+        }
+        if (!current) {
+            startLog(generation);
+            logEntries = 0;
+        }
+        log = FileChannel.open(logFile, StandardOpenOption.WRITE);
+        // drops a result cut short by a crash
+        long size = log.size();
+        log.position(size - (size - LOG_HEADER_SIZE) % ENTRY_SIZE);
+    }
+
+    private void startLog(long logGeneration) throws IOException {
+        Path temp = logFile.resolveSibling(LOG + ".tmp");
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        header.putInt(LOG_MAGIC).putInt(VERSION).putLong(logGeneration).flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+        Files.move(temp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Writes a snapshot covering the current log, then starts the next generation's log. */
+    private void compact(Map<Integer, GameStats> stats) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(20 + stats.size() * 48);
+        out.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(generation).putInt(stats.size());
+        for (GameStats entry : stats.values()) {
+            Rules rules = entry.getRules();
+            out.put((byte) entry.getMode())
+                .put((byte) rules.getWidth())
+                .put((byte) rules.getHeight())
+                .put((byte) rules.getWinLength())
+                .putInt(entry.games)
+                .putInt(entry.xWins)
+                .putInt(entry.oWins)
+                .putInt(entry.draws)
+                .putInt(entry.wins)
+                .putInt(entry.losses)
+                .putInt(entry.streak)
+                .putInt(entry.bestStreak)
+                .putInt(entry.fastestWin)
+                .putLong(entry.lastPlayedMillis);
+        }
+        Path temp = snapshotFile.resolveSibling(SNAPSHOT + ".tmp");
+        Files.write(temp, out.array());
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.close();
+        log = null;
+        generation++;
+        startLog(generation);
+        logEntries = 0;
+        log = FileChannel.open(logFile, StandardOpenOption.WRITE);
+        log.position(LOG_HEADER_SIZE);
+    }
+
+    /** Writes the queued results and stops the writer thread. */
+    @Override
+    public void close() throws IOException {
+        // a batch already running or queued by flush() finishes; one waiting for its delay is dropped and written below
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                throw new IOException("Stats writer did not finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the stats");
+        }
+        writeBatch();
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+}
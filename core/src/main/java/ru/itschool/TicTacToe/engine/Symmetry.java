@@ -0,0 +1,92 @@
+package ru.itschool.TicTacToe.engine;
+
+/**
+ * The 8 rotations and reflections of a square board. Positions that map onto each other share one
+ * canonical key, the smallest {@code x | o << cells} over all transforms, which is what the
+ * {@link OpeningBook} is keyed by. Only used for fields of up to 4x4, whose key fits in 32 bits.
+ */
+public final class Symmetry {
+    public static final int TRANSFORMS = 8;
+    public static final int MAX_SIZE = 4;
+
+    /** Target cell of every cell under every transform, indexed by size, transform and cell. */
+    private static final int[][][] MAP = new int[MAX_SIZE + 1][TRANSFORMS][];
+    private static final int[][][] INVERSE = new int[MAX_SIZE + 1][TRANSFORMS][];
+
+    static {
+        for (int size = Rules.MIN_SIZE; size <= MAX_SIZE; size++) {
+            int last = size - 1;
+            for (int t = 0; t < TRANSFORMS; t++) {
+                int[] map = new int[size * size];
+                int[] inverse = new int[size * size];
+                for (int row = 0; row < size; row++) {
+                    for (int col = 0; col < size; col++) {
+                        int r, c;
+                        switch (t) {
+                            case 0: r = row; c = col; break;
+                            case 1: r = col; c = last - row; break;
+                            case 2: r = last - row; c = last - col; break;
+                            case 3: r = last - col; c = row; break;
+                            case 4: r = row; c = last - col; break;
+                            case 5: r = col; c = row; break;
+                            case 6: r = last - row; c = col; break;
+                            default: r = last - col; c = last - row; break;
+                        }
+                        map[row * size + col] = r * size + c;
+                        inverse[r * size + c] = row * size + col;
+                    }
+                }
+                MAP[size][t] = map;
+                INVERSE[size][t] = inverse;
+            }
+        }
+    }
+
+    private Symmetry() {
+    }
+
+    public static boolean supports(int size) {
+        return size >= Rules.MIN_SIZE && size <= MAX_SIZE;
+    }
+
+    public static long transform(int size, int t, long bits) {
+        int[] map = MAP[size][t];
+        long result = 0;
+        for (; bits != 0; bits &= bits - 1) {
+            result |= 1L << map[Long.numberOfTrailingZeros(bits)];
+        }
+        return result;
+    }
+
+    public static long key(int size, long xBits, long oBits) {
+        return xBits | oBits << (size * size);
+    }
+
+    /** @return the transform that maps the position onto its canonical key */
+    public static int canonicalTransform(int size, long xBits, long oBits) {
+        int best = 0;
+        long bestKey = Long.MAX_VALUE;
+        for (int t = 0; t < TRANSFORMS; t++) {
+            long key = key(size, transform(size, t, xBits), transform(size, t, oBits));
+            if (key < bestKey) {
+                bestKey = key;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    public static long canonicalKey(int size, long xBits, long oBits) {
+        int t = canonicalTransform(size, xBits, oBits);
+        return key(size, transform(size, t, xBits), transform(size, t, oBits));
+    }
+
+    public static int transformCell(int size, int t, int cell) {
+        return MAP[size][t][cell];
+    }
+
+    /** Maps a cell of the transformed board back to the original board. */
+    public static int inverseCell(int size, int t, int cell) {
+        return INVERSE[size][t][cell];
+    }
+}
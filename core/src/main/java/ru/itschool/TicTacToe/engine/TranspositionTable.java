@@ -0,0 +1,101 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results keyed by Zobrist hash.
+ * Entries live in primitive arrays grouped into two-slot buckets: the first slot keeps the
+ * deepest result (unless it is from an older search), the second is always replaced.
+ * <p>
+ * The table is shared by search threads without locking. Each slot stores the key XORed with
+ * its data, so an entry torn by two threads writing at once no longer matches its hash and
+ * simply reads as a miss.
+ */
+public final class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    public static final int NO_MOVE = 0xFF;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int age;
+
+    /** @param sizeLog2 log2 of the number of entries */
+    public TranspositionTable(int sizeLog2) {
+        if (sizeLog2 < 1 || sizeLog2 > 28) {
+            throw new IllegalArgumentException("Table size must be between 2^1 and 2^28 entries: 2^" + sizeLog2);
+        }
+        int size = 1 << sizeLog2;
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /** Marks the start of a new search so entries from earlier searches become replaceable. */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    /** @return the packed entry for the hash, or 0 if there is none */
+    public long probe(long hash) {
+        int index = (int) hash & mask & ~1;
+        for (int i = index; i <= index + 1; i++) {
+            long entry = data[i];
+            if (entry != 0 && (keys[i] ^ entry) == hash) {
+                return entry;
+            }
+        }
+        return 0;
+    }
+
+    public void store(long hash, int depth, int flag, int score, int move) {
+        int index = (int) hash & mask & ~1;
+        long entry = pack(depth, flag, score, move);
+        long current = data[index];
+        if (current == 0 || (keys[index] ^ current) == hash || depth >= depth(current) || age(current) != age) {
+            keys[index] = hash ^ entry;
+            data[index] = entry;
+        } else {
+            keys[index + 1] = hash ^ entry;
+            data[index + 1] = entry;
+        }
+    }
+
+    private long pack(int depth, int flag, int score, int move) {
+        // bit 63 marks the entry as used so that an all-zero entry is never valid
+        return (1L << 63) | ((long) age << 48) | ((long) flag << 46) | ((long) (depth & 0xFF) << 38)
+            | ((long) (move & 0xFF) << 30) | ((score + (1 << 29)) & 0x3FFF_FFFFL);
+    }
+
+    public static int score(long entry) {
+        return (int) (entry & 0x3FFF_FFFFL) - (1 << 29);
+    }
+
+    public static int move(long entry) {
+        return (int) (entry >>> 30) & 0xFF;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 38) & 0xFF;
+    }
+
+    public static int flag(long entry) {
+        return (int) (entry >>> 46) & 0x3;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> 48) & 0xFF;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.itschool.TicTacToe.engine;
+
+import java.util.SplittableRandom;
+
+/** Fixed-seed Zobrist keys, so hashes are stable across runs and threads. */
+final class Zobrist {
+    private static final long[][] KEYS = new long[2][Rules.MAX_CELLS];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x7A0B_C0DE_5EEDL);
+        for (long[] side : KEYS) {
+            for (int i = 0; i < side.length; i++) {
+                side[i] = random.nextLong();
+            }
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    static long key(int player, int cell) {
+        return KEYS[player][cell];
+    }
+
+    /** Hash of the empty field: the field size and win length mixed by the SplitMix64 finalizer. */
+    static long key(Rules rules) {
+        long z = (rules.getWidth() << 16 | rules.getHeight() << 8 | rules.getWinLength()) * 0x9E37_79B9_7F4A_7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,232 @@
+package ru.itschool.TicTacToe.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Records frame times, render counters, heap and GC use and AI cost of a running game, and
+ * writes them out as CSV (one row per {@link #sample}) or as a JSON summary.
+ * Everything is recorded on the render thread and nothing allocates after construction,
+ * except writing.
+ */
+public class Metrics {
+    /** Supplies garbage collector totals; the way to read them differs per platform. */
+    public interface GcSampler {
+        long getCollectionCount();
+
+        long getCollectionTimeMillis();
+    }
+
+    /** Frames kept for the percentiles, about ten seconds at 60 FPS. */
+    public static final int FRAME_WINDOW = 600;
+    /** Samples kept for the CSV, an hour at one sample per second. */
+    public static final int MAX_SAMPLES = 3600;
+    /** AI moves kept for the JSON summary. */
+    public static final int MAX_MOVES = 1000;
+
+    private static final String CSV_HEADER = "timeMillis,frames,fps,frameP50Millis,frameP95Millis,frameP99Millis,"
+        + "frameMaxMillis,drawCalls,textureBindings,renderCalls,heapUsedBytes,gcCount,gcTimeMillis,"
+        + "aiMoves,aiNodes,aiThinkMillis";
+
+    private final GcSampler gcSampler;
+    private final long startNanos = System.nanoTime();
+
+    private final float[] frameTimes = new float[FRAME_WINDOW];
+    private final float[] sortedFrameTimes = new float[FRAME_WINDOW];
+    private int frameTimeCount;
+    private int nextFrameTime;
+    private boolean sorted;
+    private long frames;
+
+    private int drawCalls;
+    private int textureBindings;
+    private int renderCalls;
+    private long textureBytes;
+
+    private long aiMoves;
+    private long aiNodes;
+    private long aiThinkNanos;
+    private final long[] moveNodes = new long[MAX_MOVES];
+    private final long[] moveNanos = new long[MAX_MOVES];
+
+    private final long[][] samples = new long[MAX_SAMPLES][];
+    private int sampleCount;
+    private int nextSample;
+    private long framesAtLastSample;
+    private long lastSampleNanos = startNanos;
+
+    /** @param gcSampler source of GC totals, or null if the platform has none */
+    public Metrics(GcSampler gcSampler) {
+        this.gcSampler = gcSampler;
+        for (int i = 0; i < MAX_SAMPLES; i++) {
+            samples[i] = new long[16];
+        }
+    }
+
+    /** Records one rendered frame and the GL work it took. */
+    public void recordFrame(float deltaSeconds, int drawCalls, int textureBindings, int renderCalls) {
+        frameTimes[nextFrameTime] = deltaSeconds * 1000f;
+        nextFrameTime = (nextFrameTime + 1) % FRAME_WINDOW;
+        if (frameTimeCount < FRAME_WINDOW) frameTimeCount++;
+        sorted = false;
+        frames++;
+        this.drawCalls = drawCalls;
+        this.textureBindings = textureBindings;
+        this.renderCalls = renderCalls;
+    }
+
+    /** Records one move chosen by the AI. */
+    public void recordAIMove(long nodes, long thinkNanos) {
+        int slot = (int)(aiMoves % MAX_MOVES);
+        moveNodes[slot] = nodes;
+        moveNanos[slot] = thinkNanos;
+        aiMoves++;
+        aiNodes += nodes;
+        aiThinkNanos += thinkNanos;
+    }
+
+    /** Appends a row to the CSV log; meant to be called about once a second. */
+    public void sample() {
+        long now = System.nanoTime();
+        long[] row = samples[nextSample];
+        nextSample = (nextSample + 1) % MAX_SAMPLES;
+        if (sampleCount < MAX_SAMPLES) sampleCount++;
+
+        long elapsed = Math.max(1, now - lastSampleNanos);
+        row[0] = (now - startNanos) / 1_000_000;
+        row[1] = frames;
+        row[2] = (frames - framesAtLastSample) * 1_000_000_000L / elapsed;
+        // frame times are stored in microseconds so the row stays a long[]
+        row[3] = (long)(getFrameTimePercentile(0.50) * 1000);
+        row[4] = (long)(getFrameTimePercentile(0.95) * 1000);
+        row[5] = (long)(getFrameTimePercentile(0.99) * 1000);
+        row[6] = (long)(getFrameTimePercentile(1.00) * 1000);
+        row[7] = drawCalls;
+        row[8] = textureBindings;
+        row[9] = renderCalls;
+        row[10] = getHeapUsedBytes();
+        row[11] = getGcCount();
+        row[12] = getGcTimeMillis();
+        row[13] = aiMoves;
+        row[14] = aiNodes;
+        row[15] = aiThinkNanos / 1_000_000;
+        framesAtLastSample = frames;
+        lastSampleNanos = now;
+    }
+
+    /** @return the frame time in milliseconds below which the given fraction of recent frames fall */
+    public float getFrameTimePercentile(double fraction) {
+        if (frameTimeCount == 0) return 0;
+        if (!sorted) {
+            System.arraycopy(frameTimes, 0, sortedFrameTimes, 0, frameTimeCount);
+            Arrays.sort(sortedFrameTimes, 0, frameTimeCount);
+            sorted = true;
+        }
+        int index = (int)Math.ceil(fraction * frameTimeCount) - 1;
+        return sortedFrameTimes[Math.max(0, Math.min(frameTimeCount - 1, index))];
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public int getTextureBindings() {
+        return textureBindings;
+    }
+
+    public int getRenderCalls() {
+        return renderCalls;
+    }
+
+    /** Records the video memory of the loaded textures, which every screen shares. */
+    public void setTextureBytes(long textureBytes) {
+        this.textureBytes = textureBytes;
+    }
+
+    public long getTextureBytes() {
+        return textureBytes;
+    }
+
+    public long getHeapUsedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public long getHeapMaxBytes() {
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    /** @return collections since startup, or -1 if unknown */
+    public long getGcCount() {
+        return gcSampler != null ? gcSampler.getCollectionCount() : -1;
+    }
+
+    /** @return milliseconds spent collecting since startup, or -1 if unknown */
+    public long getGcTimeMillis() {
+        return gcSampler != null ? gcSampler.getCollectionTimeMillis() : -1;
+    }
+
+    public long getAIMoves() {
+        return aiMoves;
+    }
+
+    public long getAINodes() {
+        return aiNodes;
+    }
+
+    public long getLastAIMoveNodes() {
+        return aiMoves > 0 ? moveNodes[(int)((aiMoves - 1) % MAX_MOVES)] : 0;
+    }
+
+    public long getLastAIMoveNanos() {
+        return aiMoves > 0 ? moveNanos[(int)((aiMoves - 1) % MAX_MOVES)] : 0;
+    }
+
+    /** Writes the kept samples, oldest first, with a header row. */
+    public void writeCsv(Writer out) throws IOException {
+        out.write(CSV_HEADER);
+        out.write('\n');
+        int first = sampleCount < MAX_SAMPLES ? 0 : nextSample;
+        for (int i = 0; i < sampleCount; i++) {
+            long[] row = samples[(first + i) % MAX_SAMPLES];
+            for (int column = 0; column < row.length; column++) {
+                if (column > 0) out.write(',');
+                if (column >= 3 && column <= 6) {
+                    out.write(String.format(Locale.ROOT, "%.3f", row[column] / 1000.0));
+                } else {
+                    out.write(Long.toString(row[column]));
+                }
+            }
+            out.write('\n');
+        }
+    }
+
+    /** Writes the current totals and percentiles and the kept AI moves as one JSON object. */
+    public void writeJson(Writer out) throws IOException {
+        out.write(String.format(Locale.ROOT,
+            "{\n  \"uptimeMillis\": %d,\n  \"frames\": %d,\n"
+                + "  \"frameTimeMillis\": {\"p50\": %.3f, \"p95\": %.3f, \"p99\": %.3f, \"max\": %.3f},\n"
+                + "  \"drawCalls\": %d,\n  \"textureBindings\": %d,\n  \"renderCalls\": %d,\n  \"textureBytes\": %d,\n"
+                + "  \"heapUsedBytes\": %d,\n  \"heapMaxBytes\": %d,\n  \"gcCount\": %d,\n  \"gcTimeMillis\": %d,\n"
+                + "  \"ai\": {\"moves\": %d, \"nodes\": %d, \"thinkMillis\": %d, \"recentMoves\": [",
+            (System.nanoTime() - startNanos) / 1_000_000, frames,
+            getFrameTimePercentile(0.50), getFrameTimePercentile(0.95),
+            getFrameTimePercentile(0.99), getFrameTimePercentile(1.00),
+            drawCalls, textureBindings, renderCalls, textureBytes,
+            getHeapUsedBytes(), getHeapMaxBytes(), getGcCount(), getGcTimeMillis(),
+            aiMoves, aiNodes, aiThinkNanos / 1_000_000));
+        long kept = Math.min(aiMoves, MAX_MOVES);
+        for (long move = aiMoves - kept; move < aiMoves; move++) {
+            int slot = (int)(move % MAX_MOVES);
+            out.write(String.format(Locale.ROOT, "%s\n    {\"nodes\": %d, \"thinkMillis\": %.3f}",
+                move > aiMoves - kept ? "," : "", moveNodes[slot], moveNanos[slot] / 1_000_000.0));
+        }
+        out.write(kept > 0 ? "\n  ]}\n}\n" : "]}\n}\n");
+    }
+}
@@ -0,0 +1,163 @@
+package ru.itschool.TicTacToe.net;
+
+import ru.itschool.TicTacToe.engine.Rules;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Connection to a game server. Connecting and reading happen on a background thread, which also calls
+ * the {@link Listener}; sending is a short blocking write from the caller's thread.
+ */
+public final class GameClient implements Closeable {
+    /** Called on the client's thread. */
+    public interface Listener {
+        /** @param side {@code Board.X} or {@code Board.O}; X moves first */
+        void matchStarted(int side);
+
+        /** A move of either player, including the ones this client sent. */
+        void moved(int cell);
+
+        void opponentLeft();
+
+        /** @param reason one of the {@code Protocol.REJECT_} codes */
+        void rejected(int reason);
+
+        /** @param cause why the connection failed, or null if it was closed by either side */
+        void disconnected(IOException cause);
+    }
+
+    private final InetSocketAddress address;
+    private final Listener listener;
+
+    // guarded by this
+    private SocketChannel channel;
+    private Thread thread;
+    private Rules pendingJoin;
+    private boolean closed;
+
+    /** @param address {@code host} or {@code host:port}; the port defaults to {@link Protocol#DEFAULT_PORT} */
+    public GameClient(String address, Listener listener) {
+        this.address = parseAddress(address);
+        this.listener = listener;
+    }
+
+    static InetSocketAddress parseAddress(String address) {
+        address = address.trim();
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            return InetSocketAddress.createUnresolved(address, Protocol.DEFAULT_PORT);
+        }
+        try {
+            return InetSocketAddress.createUnresolved(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Expected a server address like host or host:port: " + address, e);
+        }
+    }
+
+    /** Queues for a match with these rules, connecting first if there is no connection. */
+    public synchronized void join(Rules rules) {
+        if (closed) return;
+        if (channel != null) {
+            send(Protocol.JOIN, rules.getWidth(), rules.getHeight(), rules.getWinLength());
+            return;
+        }
+        pendingJoin = rules;
+        if (thread == null) {
+            thread = new Thread(this::run, "game-client");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized void sendMove(int cell) {
+        if (channel != null) send(Protocol.MOVE, cell);
+    }
+
+    public synchronized void leave() {
+        pendingJoin = null;
+        if (channel != null) send(Protocol.LEAVE);
+    }
+
+    private void send(byte type, int... arguments) {
+        ByteBuffer message = ByteBuffer.allocate(1 + arguments.length);
+        message.put(type);
+        for (int argument : arguments) {
+            message.put((byte) argument);
+        }
+        message.flip();
+        try {
+            while (message.hasRemaining()) {
+                channel.write(message);
+            }
+        } catch (IOException e) {
+            // the reading thread sees the broken connection too and reports it
+            closeChannel();
+        }
+    }
+
+    private void run() {
+        IOException cause = null;
+        try (SocketChannel socket = SocketChannel.open()) {
+            socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()));
+            socket.socket().setTcpNoDelay(true);
+            synchronized (this) {
+                if (closed) return;
+                channel = socket;
+                if (pendingJoin != null) join(pendingJoin);
+                pendingJoin = null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            MessageAssembler assembler = new MessageAssembler();
+            while (socket.read(buffer) >= 0) {
+                buffer.flip();
+                while (assembler.add(buffer)) {
+                    dispatch(assembler.message());
+                }
+                buffer.clear();
+            }
+        } catch (AsynchronousCloseException e) {
+            // closed on purpose
+        } catch (IOException e) {
+            cause = e;
+        } finally {
+            boolean wasClosed;
+            synchronized (this) {
+                channel = null;
+                thread = null;
+                wasClosed = closed;
+            }
+            if (!wasClosed) listener.disconnected(cause);
+        }
+    }
+
+    private void dispatch(byte[] message) {
+        switch (message[0]) {
+            case Protocol.START: listener.matchStarted(message[1] & 0xFF); break;
+            case Protocol.MOVED: listener.moved(message[1] & 0xFF); break;
+            case Protocol.OPPONENT_LEFT: listener.opponentLeft(); break;
+            case Protocol.REJECTED: listener.rejected(message[1] & 0xFF); break;
+            default: break;
+        }
+    }
+
+    private synchronized void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+
+    /** Drops the connection without calling {@link Listener#disconnected}. */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        closeChannel();
+    }
+}
@@ -0,0 +1,40 @@
+package ru.itschool.TicTacToe.net;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reassembles {@link Protocol} messages from a byte stream that may split them anywhere.
+ * Holds at most one partial message, so one can be kept per connection for a few bytes.
+ */
+public final class MessageAssembler {
+    private final byte[] message = new byte[Protocol.MAX_MESSAGE_SIZE];
+    private int length;
+
+    /**
+     * Consumes bytes from the buffer until a message is complete or the buffer is empty. Call it in a loop:
+     * {@code while (assembler.add(buffer)) handle(assembler.message());}
+     * @return whether {@link #message()} now holds a complete message
+     * @throws ProtocolException if the stream has a message type the protocol does not know
+     */
+    public boolean add(ByteBuffer in) throws ProtocolException {
+        while (in.hasRemaining()) {
+            message[length++] = in.get();
+            int size = Protocol.messageSize(message[0]);
+            if (size < 0) {
+                length = 0;
+                throw new ProtocolException("Unknown message type " + message[0]);
+            }
+            if (length == size) {
+                length = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the last completed message; the arguments are unsigned, read them with {@code & 0xFF} */
+    public byte[] message() {
+        return message;
+    }
+}
@@ -0,0 +1,60 @@
+package ru.itschool.TicTacToe.net;
+
+/**
+ * Wire format between {@link GameClient} and the game server. Every message is a type byte followed
+ * by a fixed number of unsigned byte arguments, so messages need no length prefix and are at most
+ * {@value #MAX_MESSAGE_SIZE} bytes.
+ * <p>
+ * Client to server:
+ * <ul>
+ * <li>{@link #JOIN} width, height, win length: queue for a match with these rules, leaving the current one</li>
+ * <li>{@link #JOIN_AI} width, height, win length: start a match against the server's AI at once, playing X</li>
+ * <li>{@link #MOVE} cell: play on the current match</li>
+ * <li>{@link #LEAVE}: give up the current match or stop waiting for one</li>
+ * </ul>
+ * Server to client:
+ * <ul>
+ * <li>{@link #START} side: a match has begun; the side is {@code Board.X} or {@code Board.O}</li>
+ * <li>{@link #MOVED} cell: a move of either player, in order. Clients only change their board on these,
+ *     and a match is over once its board is</li>
+ * <li>{@link #OPPONENT_LEFT}: the match was abandoned by the other player</li>
+ * <li>{@link #REJECTED} reason: the last message was not accepted, see the {@code REJECT_} codes</li>
+ * </ul>
+ */
+public final class Protocol {
+    public static final int DEFAULT_PORT = 7777;
+    public static final int MAX_MESSAGE_SIZE = 4;
+
+    public static final byte JOIN = 1;
+    public static final byte MOVE = 2;
+    public static final byte LEAVE = 3;
+    public static final byte JOIN_AI = 4;
+
+    public static final byte START = 16;
+    public static final byte MOVED = 17;
+    public static final byte OPPONENT_LEFT = 18;
+    public static final byte REJECTED = 19;
+
+    public static final int REJECT_BAD_RULES = 1;
+    public static final int REJECT_NOT_IN_MATCH = 2;
+    public static final int REJECT_NOT_YOUR_TURN = 3;
+    public static final int REJECT_ILLEGAL_MOVE = 4;
+
+    private Protocol() {
+    }
+
+    /** @return the size of a message of the given type, including the type byte, or -1 if the type is unknown */
+    public static int messageSize(int type) {
+        switch (type) {
+            case JOIN: return 4;
+            case MOVE: return 2;
+            case LEAVE: return 1;
+            case JOIN_AI: return 4;
+            case START: return 2;
+            case MOVED: return 2;
+            case OPPONENT_LEFT: return 1;
+            case REJECTED: return 2;
+            default: return -1;
+        }
+    }
+}
@@ -13,7 +13,12 @@ public class Lwjgl3Launcher {
     }
 
     private static void createApplication() {
-        new Lwjgl3Application(new TicTacToeGame(), getDefaultConfiguration());
+        // run with -Dtictactoe.metrics=true to write the metrics to ~/tictactoe/metrics/ whenever the window is minimized or closed
+        boolean exportMetrics = Boolean.getBoolean("tictactoe.metrics");
+        // -Dtictactoe.startupProbe=true quits once the menu is drawn, for StartupBenchmark
+        TicTacToeGame game = Boolean.getBoolean("tictactoe.startupProbe") ? new StartupProbeGame(new ManagementGcSampler())
+            : new TicTacToeGame(new ManagementGcSampler(), exportMetrics);
+        new Lwjgl3Application(game, getDefaultConfiguration());
     }
 
     private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
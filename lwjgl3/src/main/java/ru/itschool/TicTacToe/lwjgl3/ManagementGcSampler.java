@@ -0,0 +1,30 @@
+package ru.itschool.TicTacToe.lwjgl3;
+
+import ru.itschool.TicTacToe.metrics.Metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/** Reads GC totals from the JVM's garbage collector beans, summed over all collectors. */
+class ManagementGcSampler implements Metrics.GcSampler {
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    @Override
+    public long getCollectionCount() {
+        long count = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            count += Math.max(0, collectors.get(i).getCollectionCount());
+        }
+        return count;
+    }
+
+    @Override
+    public long getCollectionTimeMillis() {
+        long time = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            time += Math.max(0, collectors.get(i).getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,96 @@
+package ru.itschool.TicTacToe.lwjgl3;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts the desktop game several times as a JVM and, if given, as a native image, and compares the time
+ * from process launch to the first frame and to the drawn menu, and the peak resident set size.
+ * Each run is a fresh process started with {@code -Dtictactoe.startupProbe=true}, so it quits by itself;
+ * the medians are reported. Peak RSS is only available on Linux. Needs a display; run under
+ * {@code xvfb-run} on a headless machine. Run with {@code gradlew :lwjgl3:startupBenchmark}.
+ * <p>
+ * Arguments: {@code runs jar [native executable]}.
+ */
+public final class StartupBenchmark {
+    private static final String PROBE = "-Dtictactoe.startupProbe=true";
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: StartupBenchmark runs jar [native executable]");
+            System.exit(2);
+        }
+        int runs = Integer.parseInt(args[0]);
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String[]> commands = new ArrayList<>();
+        commands.add(new String[] {"jvm", java, PROBE, "-jar", args[1]});
+        if (args.length > 2) {
+            commands.add(new String[] {"native", args[2], PROBE});
+        }
+
+        System.out.printf("%-8s %6s %16s %12s %14s%n", "build", "runs", "first frame ms", "menu ms", "peak RSS MB");
+        for (String[] command : commands) {
+            double[] firstFrame = new double[runs];
+            double[] menu = new double[runs];
+            double[] rss = new double[runs];
+            for (int run = 0; run < runs; run++) {
+                long[] result = launch(Arrays.copyOfRange(command, 1, command.length));
+                firstFrame[run] = result[0];
+                menu[run] = result[1];
+                rss[run] = result[2] / 1024.0;
+            }
+            System.out.printf("%-8s %6d %16.0f %12.0f %14.1f%n",
+                command[0], runs, median(firstFrame), median(menu), median(rss));
+        }
+    }
+
+    /** @return milliseconds from launch to the first frame and to the menu, and peak RSS in kB */
+    private static long[] launch(String... command) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long[] result = null;
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith(StartupProbeGame.PREFIX + " ")) result = parse(line, start);
+            }
+        }
+        int exit = process.waitFor();
+        if (result == null) {
+            throw new IllegalStateException(String.join(" ", command) + " exited with " + exit
+                + " before drawing the menu");
+        }
+        return result;
+    }
+
+    private static long[] parse(String line, long start) {
+        long[] result = new long[3];
+        for (String field : line.substring(StartupProbeGame.PREFIX.length() + 1).split(" ")) {
+            String[] pair = field.split("=", 2);
+            long value = Long.parseLong(pair[1]);
+            switch (pair[0]) {
+                case "firstFrame": result[0] = value - start; break;
+                case "menu": result[1] = value - start; break;
+                case "peakRssKb": result[2] = value; break;
+                default: break;
+            }
+        }
+        return result;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
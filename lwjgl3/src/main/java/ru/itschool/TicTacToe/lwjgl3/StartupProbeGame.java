@@ -0,0 +1,52 @@
+package ru.itschool.TicTacToe.lwjgl3;
+
+import com.badlogic.gdx.Gdx;
+import ru.itschool.TicTacToe.MenuScreen;
+import ru.itschool.TicTacToe.TicTacToeGame;
+import ru.itschool.TicTacToe.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * The game, quitting as soon as the menu has been drawn. It prints one line for {@link StartupBenchmark}:
+ * the wall clock times of the first frame and of the first menu frame, and the peak resident set size.
+ */
+class StartupProbeGame extends TicTacToeGame {
+    static final String PREFIX = "startup";
+
+    private long firstFrameMillis;
+    private boolean reported;
+
+    StartupProbeGame(Metrics.GcSampler gcSampler) {
+        super(gcSampler, false);
+    }
+
+    @Override
+    public void render() {
+        super.render();
+        if (firstFrameMillis == 0) firstFrameMillis = System.currentTimeMillis();
+        if (!reported && getScreen() instanceof MenuScreen) {
+            reported = true;
+            System.out.println(PREFIX + " firstFrame=" + firstFrameMillis + " menu=" + System.currentTimeMillis()
+                + " peakRssKb=" + peakRssKb());
+            Gdx.app.exit();
+        }
+    }
+
+    /** @return VmHWM from {@code /proc/self/status}, or -1 where there is no such file */
+    private static long peakRssKb() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.ISO_8859_1)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux
+        }
+        return -1;
+    }
+}
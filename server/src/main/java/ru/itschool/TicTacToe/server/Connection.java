@@ -0,0 +1,30 @@
+package ru.itschool.TicTacToe.server;
+
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.Rules;
+import ru.itschool.TicTacToe.net.MessageAssembler;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/** Server-side state of one client. Only touched on the server's selector thread. */
+final class Connection {
+    final SocketChannel channel;
+    final SelectionKey key;
+    final MessageAssembler assembler = new MessageAssembler();
+
+    /** Output the socket did not take yet; null almost always, so idle clients cost no buffer. */
+    ByteBuffer pending;
+
+    /** Rules this client is queued for, or null. */
+    Rules waitingFor;
+    Match match;
+    /** {@link Board#X} or {@link Board#O} in the current match. */
+    int side = Board.EMPTY;
+
+    Connection(SocketChannel channel, SelectionKey key) {
+        this.channel = channel;
+        this.key = key;
+    }
+}
@@ -0,0 +1,505 @@
+package ru.itschool.TicTacToe.server;
+
+import ru.itschool.TicTacToe.engine.AlphaBetaSearch;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.OpeningBook;
+import ru.itschool.TicTacToe.engine.Rules;
+import ru.itschool.TicTacToe.net.Protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless server that pairs clients by rules and relays their moves, speaking {@link Protocol}.
+ * One thread serves every connection through a {@link Selector}, and a match is a {@link Board} and
+ * two small objects, so idle matches cost a few hundred bytes of heap plus the sockets' kernel buffers.
+ * The server's board is the authority: moves are checked on it and only then sent to both players.
+ * <p>
+ * Matches against the AI search a copy of the board on a pool of AI threads, one {@link AlphaBetaSearch}
+ * per thread, and hand the move back to the selector thread, which never waits for a search.
+ * Opening books are read from the working directory.
+ * <p>
+ * Options: {@code --port N} (default {@value Protocol#DEFAULT_PORT}), {@code --stats SECONDS} to print
+ * connection and match counts periodically, and {@code --ai-threads N}, {@code --ai-time MS} and
+ * {@code --ai-depth N} for the AI.
+ */
+public final class GameServer implements Runnable, Closeable {
+    /** A client whose unsent output grows past this is not reading and gets disconnected. */
+    private static final int MAX_PENDING = 4096;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    // shared by every connection; the selector thread handles one at a time
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(Protocol.MAX_MESSAGE_SIZE);
+    private final Map<Rules, Connection> waiting = new HashMap<>();
+    /** Rules by packed dimensions, so matches share the precomputed windows. */
+    private final Map<Integer, Rules> rulesCache = new HashMap<>();
+    private final Map<Rules, OpeningBook> openingBooks = new HashMap<>();
+
+    private int aiThreads = Runtime.getRuntime().availableProcessors();
+    private long aiTimeBudgetMillis = 100;
+    private int aiMaxDepth = AlphaBetaSearch.MAX_PLY;
+    private ExecutorService aiExecutor;
+    private ThreadLocal<AlphaBetaSearch> searches;
+    private final Queue<AIReply> aiReplies = new ConcurrentLinkedQueue<>();
+    private final AtomicLong aiMoves = new AtomicLong();
+    private final AtomicLong aiNanos = new AtomicLong();
+
+    private volatile boolean running = true;
+    // written only by the selector thread
+    private volatile int connections;
+    private volatile int matches;
+    private volatile long matchesFinished;
+    private volatile long moves;
+
+    /** A move found by an AI thread for a match, played on the selector thread if the match is still on. */
+    private static final class AIReply {
+        final Match match;
+        final int moveCount;
+        final int cell;
+
+        AIReply(Match match, int moveCount, int cell) {
+            this.match = match;
+            this.moveCount = moveCount;
+            this.cell = cell;
+        }
+    }
+
+    public GameServer(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        // a deep backlog lets thousands of clients connect at once
+        serverChannel.bind(new InetSocketAddress(port), 4096);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = Protocol.DEFAULT_PORT;
+        int statsSeconds = 0;
+        int aiThreads = Runtime.getRuntime().availableProcessors();
+        long aiTime = 100;
+        int aiDepth = AlphaBetaSearch.MAX_PLY;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[i + 1]); break;
+                case "--stats": statsSeconds = Integer.parseInt(args[i + 1]); break;
+                case "--ai-threads": aiThreads = Integer.parseInt(args[i + 1]); break;
+                case "--ai-time": aiTime = Long.parseLong(args[i + 1]); break;
+                case "--ai-depth": aiDepth = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        GameServer server = new GameServer(port);
+        server.setAIThreads(aiThreads);
+        server.setAITimeBudgetMillis(aiTime);
+        server.setAIMaxDepth(aiDepth);
+        System.out.println("Listening on port " + server.getPort());
+        if (statsSeconds > 0) {
+            long interval = statsSeconds * 1000L;
+            Thread stats = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(interval);
+                        System.out.println(server.statsLine());
+                    }
+                } catch (InterruptedException e) {
+                    // exits with the server
+                }
+            }, "server-stats");
+            stats.setDaemon(true);
+            stats.start();
+        }
+        server.run();
+    }
+
+    /** Serves clients until {@link #close()} is called. */
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isWritable()) writePending(connection);
+                    if (key.isValid() && key.isReadable()) read(connection);
+                }
+                playAIReplies();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Selector failed", e);
+        } finally {
+            if (aiExecutor != null) aiExecutor.shutdownNow();
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+            connections++;
+        }
+    }
+
+    private void read(Connection connection) {
+        readBuffer.clear();
+        try {
+            if (connection.channel.read(readBuffer) < 0) {
+                disconnect(connection);
+                return;
+            }
+            readBuffer.flip();
+            while (connection.assembler.add(readBuffer)) {
+                handle(connection, connection.assembler.message());
+                if (!connection.key.isValid()) return;
+            }
+        } catch (IOException e) {
+            // a reset connection or a client that does not speak the protocol
+            disconnect(connection);
+        }
+    }
+
+    private void handle(Connection connection, byte[] message) {
+        switch (message[0]) {
+            case Protocol.JOIN:
+                join(connection, message[1] & 0xFF, message[2] & 0xFF, message[3] & 0xFF);
+                break;
+            case Protocol.JOIN_AI:
+                joinAI(connection, message[1] & 0xFF, message[2] & 0xFF, message[3] & 0xFF);
+                break;
+            case Protocol.MOVE:
+                move(connection, message[1] & 0xFF);
+                break;
+            case Protocol.LEAVE:
+                leave(connection);
+                break;
+            default:
+                // a server-to-client message; the client is confused but harmless
+                break;
+        }
+    }
+
+    private void join(Connection connection, int width, int height, int winLength) {
+        leave(connection);
+        Rules rules = rules(width, height, winLength);
+        if (rules == null) {
+            send(connection, Protocol.REJECTED, Protocol.REJECT_BAD_RULES);
+            return;
+        }
+        Connection opponent = waiting.remove(rules);
+        if (opponent == null) {
+            connection.waitingFor = rules;
+            waiting.put(rules, connection);
+            return;
+        }
+        // whoever waited moves first
+        opponent.waitingFor = null;
+        Match match = new Match(rules, opponent, connection);
+        opponent.match = match;
+        opponent.side = Board.X;
+        connection.match = match;
+        connection.side = Board.O;
+        matches++;
+        send(opponent, Protocol.START, Board.X);
+        send(connection, Protocol.START, Board.O);
+    }
+
+    private void joinAI(Connection connection, int width, int height, int winLength) {
+        leave(connection);
+        Rules rules = rules(width, height, winLength);
+        if (rules == null) {
+            send(connection, Protocol.REJECTED, Protocol.REJECT_BAD_RULES);
+            return;
+        }
+        Match match = new Match(rules, connection, null);
+        connection.match = match;
+        connection.side = Board.X;
+        matches++;
+        send(connection, Protocol.START, Board.X);
+    }
+
+    private Rules rules(int width, int height, int winLength) {
+        Integer packed = (width << 16) | (height << 8) | winLength;
+        Rules rules = rulesCache.get(packed);
+        if (rules == null) {
+            try {
+                rules = Rules.of(width, height, winLength);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            rulesCache.put(packed, rules);
+        }
+        return rules;
+    }
+
+    private void move(Connection connection, int cell) {
+        Match match = connection.match;
+        if (match == null) {
+            send(connection, Protocol.REJECTED, Protocol.REJECT_NOT_IN_MATCH);
+            return;
+        }
+        Board board = match.board;
+        if (board.getCurrentPlayer() != connection.side) {
+            send(connection, Protocol.REJECTED, Protocol.REJECT_NOT_YOUR_TURN);
+            return;
+        }
+        if (cell >= board.getCellCount() || !board.isEmpty(cell)) {
+            send(connection, Protocol.REJECTED, Protocol.REJECT_ILLEGAL_MOVE);
+            return;
+        }
+        playMove(match, cell);
+        if (match.isActive() && match.isVsAI()) requestAIMove(match);
+    }
+
+    private void playMove(Match match, int cell) {
+        GameState state = match.board.play(cell);
+        moves++;
+        send(match.x, Protocol.MOVED, cell);
+        if (match.o != null) send(match.o, Protocol.MOVED, cell);
+        if (state != GameState.PLAYING) {
+            // both clients see the end on their own boards; they may join again on the same connection
+            endMatch(match);
+            matchesFinished++;
+        }
+    }
+
+    private void requestAIMove(Match match) {
+        if (aiExecutor == null) {
+            aiExecutor = Executors.newFixedThreadPool(aiThreads, runnable -> {
+                Thread thread = new Thread(runnable, "server-ai");
+                thread.setDaemon(true);
+                return thread;
+            });
+            searches = ThreadLocal.withInitial(() -> {
+                AlphaBetaSearch search = new AlphaBetaSearch();
+                search.setTimeBudgetMillis(aiTimeBudgetMillis);
+                search.setMaxDepth(aiMaxDepth);
+                return search;
+            });
+        }
+        Board position = new Board(match.board);
+        OpeningBook book = openingBook(position.getRules());
+        aiExecutor.execute(() -> {
+            long start = System.nanoTime();
+            AlphaBetaSearch search = searches.get();
+            search.setOpeningBook(book);
+            int cell = search.chooseMove(position);
+            aiNanos.addAndGet(System.nanoTime() - start);
+            aiMoves.incrementAndGet();
+            aiReplies.add(new AIReply(match, position.getMoveCount(), cell));
+            selector.wakeup();
+        });
+    }
+
+    private void playAIReplies() {
+        AIReply reply;
+        while ((reply = aiReplies.poll()) != null) {
+            Match match = reply.match;
+            // the player may have left or joined another match while the AI was thinking
+            if (!match.isActive() || match.board.getMoveCount() != reply.moveCount || reply.cell < 0) continue;
+            playMove(match, reply.cell);
+        }
+    }
+
+    /** @return the opening book for classic rules from the working directory, or null */
+    private OpeningBook openingBook(Rules rules) {
+        if (!rules.isClassic()) return null;
+        if (openingBooks.containsKey(rules)) return openingBooks.get(rules);
+        OpeningBook book = null;
+        Path file = Paths.get("book" + rules.getWidth() + "x" + rules.getHeight() + ".bin");
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                book = OpeningBook.read(in);
+            } catch (IOException e) {
+                System.err.println("Could not read " + file.toAbsolutePath() + ": " + e);
+            }
+        }
+        openingBooks.put(rules, book);
+        return book;
+    }
+
+    /** Takes the connection out of the queue or its match; the opponent is told it was left. */
+    private void leave(Connection connection) {
+        if (connection.waitingFor != null) {
+            waiting.remove(connection.waitingFor);
+            connection.waitingFor = null;
+        }
+        Match match = connection.match;
+        if (match != null) {
+            endMatch(match);
+            Connection opponent = match.opponent(connection);
+            if (opponent != null) send(opponent, Protocol.OPPONENT_LEFT);
+        }
+    }
+
+    private void endMatch(Match match) {
+        match.x.match = null;
+        match.x.side = Board.EMPTY;
+        if (match.o != null) {
+            match.o.match = null;
+            match.o.side = Board.EMPTY;
+        }
+        matches--;
+    }
+
+    private void send(Connection connection, byte type) {
+        writeBuffer.clear();
+        writeBuffer.put(type).flip();
+        write(connection);
+    }
+
+    private void send(Connection connection, byte type, int argument) {
+        writeBuffer.clear();
+        writeBuffer.put(type).put((byte) argument).flip();
+        write(connection);
+    }
+
+    /** Writes the write buffer, keeping what the socket does not take for when it becomes writable. */
+    private void write(Connection connection) {
+        if (!connection.key.isValid()) return;
+        try {
+            if (connection.pending == null) {
+                connection.channel.write(writeBuffer);
+                if (!writeBuffer.hasRemaining()) return;
+                connection.pending = ByteBuffer.allocate(64);
+                connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+            ByteBuffer pending = connection.pending;
+            if (pending.remaining() < writeBuffer.remaining()) {
+                if (pending.capacity() * 2 > MAX_PENDING) {
+                    disconnect(connection);
+                    return;
+                }
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                connection.pending = pending = larger;
+            }
+            pending.put(writeBuffer);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void writePending(Connection connection) {
+        ByteBuffer pending = connection.pending;
+        if (pending == null) return;
+        try {
+            pending.flip();
+            connection.channel.write(pending);
+            if (pending.hasRemaining()) {
+                pending.compact();
+                return;
+            }
+            connection.pending = null;
+            connection.key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        if (!connection.key.isValid()) return;
+        connection.key.cancel();
+        closeQuietly(connection.channel);
+        connections--;
+        leave(connection);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+
+    /** Threads searching AI moves; set before the first match against the AI. */
+    public void setAIThreads(int aiThreads) {
+        this.aiThreads = aiThreads;
+    }
+
+    public void setAITimeBudgetMillis(long aiTimeBudgetMillis) {
+        this.aiTimeBudgetMillis = aiTimeBudgetMillis;
+    }
+
+    public void setAIMaxDepth(int aiMaxDepth) {
+        this.aiMaxDepth = aiMaxDepth;
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    /** @return matches being played right now */
+    public int getMatches() {
+        return matches;
+    }
+
+    public long getMatchesFinished() {
+        return matchesFinished;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    /** @return moves the AI has searched, including ones dropped because the player left */
+    public long getAIMoves() {
+        return aiMoves.get();
+    }
+
+    String statsLine() {
+        Runtime runtime = Runtime.getRuntime();
+        long searched = aiMoves.get();
+        return String.format("%d connections, %d matches, %d finished, %d moves, %d AI moves (avg %.2f ms), heap %d MB",
+            connections, matches, matchesFinished, moves, searched, searched > 0 ? aiNanos.get() / 1e6 / searched : 0,
+            (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+
+    /** Stops the selector thread, which closes every connection. */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+}
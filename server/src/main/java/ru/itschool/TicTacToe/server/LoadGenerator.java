@@ -0,0 +1,283 @@
+package ru.itschool.TicTacToe.server;
+
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.Rules;
+import ru.itschool.TicTacToe.net.MessageAssembler;
+import ru.itschool.TicTacToe.net.Protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Opens many idle matches against a {@link GameServer} from one thread, keeps them open for a while,
+ * then plays one move in every match and reports how long each phase took, the move round trip
+ * percentiles and the heap per match.
+ * <p>
+ * Options: {@code --matches N} (default 10000), {@code --server host:port} (default: a server in this JVM
+ * on a free port, in which case the heap figure covers the server and both clients), {@code --rules 3x3},
+ * {@code --hold SECONDS} to keep the matches idle (default 5) and {@code --connecting N} for how many
+ * connections may be in progress at once (default 1000).
+ */
+public final class LoadGenerator {
+    private static final long STALL_NANOS = 30_000_000_000L;
+
+    private int matches = 10_000;
+    private String serverAddress;
+    private Rules rules = Rules.classic(3);
+    private int holdSeconds = 5;
+    private int maxConnecting = 1000;
+
+    private GameServer server;
+    private InetSocketAddress address;
+    private Selector selector;
+    private Client[] clients;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(Protocol.MAX_MESSAGE_SIZE);
+
+    private int connecting;
+    private int started;
+    private int disconnected;
+    private int movesAcknowledged;
+    private long lastProgress;
+
+    private static final class Client {
+        SocketChannel channel;
+        final MessageAssembler assembler = new MessageAssembler();
+        int side = Board.EMPTY;
+        long moveSentAt;
+        long roundTripNanos = -1;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LoadGenerator generator = new LoadGenerator();
+        generator.parse(args);
+        generator.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--matches": matches = Integer.parseInt(value); break;
+                case "--server": serverAddress = value; break;
+                case "--rules": rules = Rules.parse(value); break;
+                case "--hold": holdSeconds = Integer.parseInt(value); break;
+                case "--connecting": maxConnecting = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        if (serverAddress == null) {
+            server = new GameServer(0);
+            Thread thread = new Thread(server, "game-server");
+            thread.setDaemon(true);
+            thread.start();
+            address = new InetSocketAddress("127.0.0.1", server.getPort());
+        } else {
+            address = parseAddress(serverAddress);
+        }
+        selector = Selector.open();
+        clients = new Client[matches * 2];
+        long heapBefore = usedHeap();
+
+        System.out.printf("Opening %d matches (%d connections) to %s, rules %s%n",
+            matches, clients.length, address, rules.getName());
+        long start = System.nanoTime();
+        lastProgress = start;
+        int opened = 0;
+        while (started < clients.length) {
+            while (opened < clients.length && connecting < maxConnecting) {
+                open(opened++);
+            }
+            poll(100);
+            if (stalled()) break;
+        }
+        double openSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %d of %d clients in a match after %.2f s (%.0f connections/s), %d disconnected%n",
+            started, clients.length, openSeconds, started / openSeconds, disconnected);
+        reportServer();
+        long heapAfter = usedHeap();
+        System.out.printf("  heap per match: %d bytes (%s)%n", (heapAfter - heapBefore) / Math.max(1, started / 2),
+            server != null ? "server and both clients" : "clients only; see the server's --stats for its side");
+
+        System.out.printf("Holding the matches idle for %d s%n", holdSeconds);
+        long holdEnd = System.nanoTime() + holdSeconds * 1_000_000_000L;
+        while (System.nanoTime() < holdEnd) {
+            poll(Math.max(1, (holdEnd - System.nanoTime()) / 1_000_000));
+        }
+        System.out.printf("  %d disconnected%n", disconnected);
+
+        playOneMoveEach();
+        reportServer();
+
+        for (Client client : clients) {
+            if (client != null && client.channel != null) client.channel.close();
+        }
+        selector.close();
+        if (server != null) server.close();
+    }
+
+    private void open(int index) throws IOException {
+        Client client = new Client();
+        clients[index] = client;
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        client.channel = channel;
+        connecting++;
+        if (channel.connect(address)) {
+            connected(client, channel.register(selector, SelectionKey.OP_READ, client));
+        } else {
+            channel.register(selector, SelectionKey.OP_CONNECT, client);
+        }
+    }
+
+    private void connected(Client client, SelectionKey key) throws IOException {
+        key.interestOps(SelectionKey.OP_READ);
+        send(client, Protocol.JOIN, rules.getWidth(), rules.getHeight(), rules.getWinLength());
+    }
+
+    /** Every match's X plays the first cell and times the server's echo. */
+    private void playOneMoveEach() throws IOException {
+        System.out.println("Playing one move in every match");
+        int expected = 0;
+        long start = System.nanoTime();
+        for (Client client : clients) {
+            if (client == null || client.side != Board.X || !client.channel.isOpen()) continue;
+            client.moveSentAt = System.nanoTime();
+            send(client, Protocol.MOVE, 0);
+            expected++;
+        }
+        lastProgress = System.nanoTime();
+        while (movesAcknowledged < expected && !stalled()) {
+            poll(100);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] roundTrips = new long[movesAcknowledged];
+        int count = 0;
+        for (Client client : clients) {
+            if (client != null && client.roundTripNanos >= 0 && count < roundTrips.length) {
+                roundTrips[count++] = client.roundTripNanos;
+            }
+        }
+        Arrays.sort(roundTrips, 0, count);
+        System.out.printf("  %d of %d moves echoed in %.2f s (%.0f moves/s); round trip p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+            movesAcknowledged, expected, seconds, movesAcknowledged / seconds,
+            percentile(roundTrips, count, 0.5), percentile(roundTrips, count, 0.99), percentile(roundTrips, count, 1));
+    }
+
+    /** @param address {@code host} or {@code host:port} */
+    static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        return colon < 0 ? new InetSocketAddress(address, Protocol.DEFAULT_PORT)
+            : new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    /** @return the value below which the given fraction of the sorted samples fall, in milliseconds */
+    static double percentile(long[] sorted, int count, double fraction) {
+        if (count == 0) return 0;
+        return sorted[Math.min(count - 1, (int) Math.ceil(fraction * count) - 1)] / 1e6;
+    }
+
+    private void poll(long timeoutMillis) throws IOException {
+        selector.select(timeoutMillis);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Client client = (Client) key.attachment();
+            try {
+                if (key.isConnectable()) {
+                    client.channel.finishConnect();
+                    connected(client, key);
+                } else if (key.isReadable()) {
+                    read(client);
+                }
+            } catch (IOException e) {
+                close(client);
+            }
+        }
+    }
+
+    private void read(Client client) throws IOException {
+        readBuffer.clear();
+        if (client.channel.read(readBuffer) < 0) {
+            close(client);
+            return;
+        }
+        readBuffer.flip();
+        while (client.assembler.add(readBuffer)) {
+            byte[] message = client.assembler.message();
+            switch (message[0]) {
+                case Protocol.START:
+                    client.side = message[1] & 0xFF;
+                    connecting--;
+                    started++;
+                    lastProgress = System.nanoTime();
+                    break;
+                case Protocol.MOVED:
+                    if (client.moveSentAt != 0 && client.roundTripNanos < 0) {
+                        client.roundTripNanos = System.nanoTime() - client.moveSentAt;
+                        movesAcknowledged++;
+                        lastProgress = System.nanoTime();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void close(Client client) throws IOException {
+        if (!client.channel.isOpen()) return;
+        client.channel.close();
+        if (client.side == Board.EMPTY) connecting--;
+        disconnected++;
+        lastProgress = System.nanoTime();
+    }
+
+    private void send(Client client, byte type, int... arguments) throws IOException {
+        writeBuffer.clear();
+        writeBuffer.put(type);
+        for (int argument : arguments) {
+            writeBuffer.put((byte) argument);
+        }
+        writeBuffer.flip();
+        // a few bytes always fit an idle socket's send buffer
+        client.channel.write(writeBuffer);
+    }
+
+    private boolean stalled() {
+        if (System.nanoTime() - lastProgress < STALL_NANOS) return false;
+        System.out.println("  no progress for " + STALL_NANOS / 1_000_000_000L + " s, giving up");
+        return true;
+    }
+
+    private void reportServer() {
+        if (server == null) return;
+        System.out.println("  server: " + server.statsLine());
+    }
+
+    /** @return heap in use after a few collections */
+    static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
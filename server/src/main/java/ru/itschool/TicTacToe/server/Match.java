@@ -0,0 +1,32 @@
+package ru.itschool.TicTacToe.server;
+
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.Rules;
+
+/** Two connections playing on one authoritative board, or one against the server's AI. */
+final class Match {
+    final Board board;
+    final Connection x;
+    /** Null when the server's AI plays O. */
+    final Connection o;
+
+    Match(Rules rules, Connection x, Connection o) {
+        this.board = new Board(rules);
+        this.x = x;
+        this.o = o;
+    }
+
+    /** @return the other player's connection, or null if it is the AI */
+    Connection opponent(Connection player) {
+        return player == x ? o : x;
+    }
+
+    boolean isVsAI() {
+        return o == null;
+    }
+
+    /** @return whether the match has not ended or been left since it started */
+    boolean isActive() {
+        return x.match == this;
+    }
+}
@@ -0,0 +1,383 @@
+package ru.itschool.TicTacToe.server;
+
+import ru.itschool.TicTacToe.engine.AlphaBetaSearch;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.Rules;
+import ru.itschool.TicTacToe.net.MessageAssembler;
+import ru.itschool.TicTacToe.net.Protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Drives thousands of simulated clients through full games against a {@link GameServer} from one thread
+ * and reports move round trips, AI reply times, finished matches per second and heap per match.
+ * Each client keeps its own {@link Board} from the server's relayed moves, plays a random empty cell
+ * whenever it is its turn and joins again once a game ends, so the server's boards and win detection
+ * are exercised exactly as by real clients.
+ * <p>
+ * Options: {@code --clients N} (default 2000), {@code --ai PERCENT} of clients playing the server's AI
+ * instead of each other (default 50), {@code --seconds N} to measure for (default 30), {@code --rules 3x3},
+ * {@code --seed N}, and {@code --server host:port} (default: a server in this JVM on a free port, in which
+ * case the heap figure covers the server and the clients). For a server in this JVM, {@code --ai-threads N},
+ * {@code --ai-time MS} and {@code --ai-depth N} configure its AI.
+ */
+public final class MatchLoadTest {
+    private static final long STALL_NANOS = 30_000_000_000L;
+
+    private int clientCount = 2000;
+    private int aiPercent = 50;
+    private int seconds = 30;
+    private Rules rules = Rules.classic(3);
+    private long seed = 1;
+    private String serverAddress;
+    private int aiThreads = Runtime.getRuntime().availableProcessors();
+    private long aiTimeMillis = 20;
+    private int aiDepth = AlphaBetaSearch.MAX_PLY;
+
+    private GameServer server;
+    private InetSocketAddress address;
+    private Selector selector;
+    private Client[] clients;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(Protocol.MAX_MESSAGE_SIZE);
+
+    /** Samples are only kept while measuring, after every client has started its first match. */
+    private boolean measuring;
+    private boolean stopping;
+    private int started;
+    private int inMatch;
+    private int disconnected;
+    private long gamesFinished;
+    private long movesPlayed;
+    private long rejected;
+    private long lastProgress;
+    private final Samples roundTrips = new Samples();
+    private final Samples aiReplies = new Samples();
+
+    private static final class Client {
+        SocketChannel channel;
+        final MessageAssembler assembler = new MessageAssembler();
+        final boolean vsAI;
+        final Random random;
+        Board board;
+        int side = Board.EMPTY;
+        boolean everStarted;
+        /** Cell sent and not yet relayed, or -1. */
+        int pendingCell = -1;
+        long moveSentAt;
+        /** When this client's last move was relayed, for timing the AI's reply. */
+        long movedAt;
+
+        Client(boolean vsAI, Random random) {
+            this.vsAI = vsAI;
+            this.random = random;
+        }
+    }
+
+    /** Growable list of nanosecond samples. */
+    private static final class Samples {
+        long[] values = new long[1 << 16];
+        int count;
+
+        void add(long value) {
+            if (count == values.length) values = Arrays.copyOf(values, count * 2);
+            values[count++] = value;
+        }
+
+        String summary() {
+            Arrays.sort(values, 0, count);
+            return String.format("p50 %.2f ms, p99 %.2f ms, max %.2f ms (%d samples)",
+                LoadGenerator.percentile(values, count, 0.5), LoadGenerator.percentile(values, count, 0.99),
+                LoadGenerator.percentile(values, count, 1), count);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        MatchLoadTest test = new MatchLoadTest();
+        test.parse(args);
+        test.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--clients": clientCount = Integer.parseInt(value); break;
+                case "--ai": aiPercent = Integer.parseInt(value); break;
+                case "--seconds": seconds = Integer.parseInt(value); break;
+                case "--rules": rules = Rules.parse(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--server": serverAddress = value; break;
+                case "--ai-threads": aiThreads = Integer.parseInt(value); break;
+                case "--ai-time": aiTimeMillis = Long.parseLong(value); break;
+                case "--ai-depth": aiDepth = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        if (serverAddress == null) {
+            server = new GameServer(0);
+            server.setAIThreads(aiThreads);
+            server.setAITimeBudgetMillis(aiTimeMillis);
+            server.setAIMaxDepth(aiDepth);
+            Thread thread = new Thread(server, "game-server");
+            thread.setDaemon(true);
+            thread.start();
+            address = new InetSocketAddress("127.0.0.1", server.getPort());
+        } else {
+            address = LoadGenerator.parseAddress(serverAddress);
+        }
+        selector = Selector.open();
+        clients = new Client[clientCount];
+        long heapBefore = LoadGenerator.usedHeap();
+
+        int aiClients = (int) ((long) clientCount * aiPercent / 100);
+        System.out.printf("%d clients (%d against the AI) playing %s on %s%n",
+            clientCount, aiClients, rules.getName(), address);
+        long start = System.nanoTime();
+        lastProgress = start;
+        for (int i = 0; i < clientCount; i++) {
+            // spread the AI players over the array so they ramp up together with the others
+            boolean vsAI = (long) i * aiClients / clientCount != (long) (i + 1) * aiClients / clientCount;
+            open(i, vsAI);
+            if (i % 500 == 499) poll(0);
+        }
+        // an odd client out may wait for a partner forever
+        int expected = clientCount - ((clientCount - aiClients) & 1);
+        while (started < expected && !stalled()) {
+            poll(100);
+        }
+        System.out.printf("  ramp-up: %d clients started a match in %.2f s%n", started, (System.nanoTime() - start) / 1e9);
+
+        // the heap is measured with every client in a match, before the clock starts
+        long heapAfter = LoadGenerator.usedHeap();
+        int matchesNow = server != null ? server.getMatches() : countMatches();
+        System.out.printf("  heap per match: %d bytes with %d matches in progress (%s)%n",
+            (heapAfter - heapBefore) / Math.max(1, matchesNow), matchesNow,
+            server != null ? "server and clients, including one-off costs such as the AI's search tables"
+                : "clients only; see the server's --stats for its side");
+
+        long movesBefore = movesPlayed;
+        long gamesBefore = gamesFinished;
+        long aiMovesBefore = server != null ? server.getAIMoves() : 0;
+        measuring = true;
+        long measureStart = System.nanoTime();
+        long measureEnd = measureStart + seconds * 1_000_000_000L;
+        while (System.nanoTime() < measureEnd) {
+            poll(Math.max(1, (measureEnd - System.nanoTime()) / 1_000_000));
+        }
+        double measured = (System.nanoTime() - measureStart) / 1e9;
+        measuring = false;
+        long games = gamesFinished - gamesBefore;
+        long moves = movesPlayed - movesBefore;
+
+        // let the games in progress end without starting new ones
+        stopping = true;
+        lastProgress = System.nanoTime();
+        while (inMatch > 0 && !stalled()) {
+            poll(100);
+        }
+
+        System.out.printf("Measured %.1f s: %d matches finished (%.0f/s), %d moves (%.0f/s), %d rejected, %d disconnected%n",
+            measured, games, games / measured, moves, moves / measured, rejected, disconnected);
+        System.out.println("  move round trip: " + roundTrips.summary());
+        if (aiClients > 0) {
+            System.out.println("  AI reply after the player's move: " + aiReplies.summary());
+        }
+        if (server != null) {
+            System.out.printf("  server searched %d AI moves while measuring; %s%n",
+                server.getAIMoves() - aiMovesBefore, server.statsLine());
+        }
+
+        for (Client client : clients) {
+            if (client != null) client.channel.close();
+        }
+        selector.close();
+        if (server != null) server.close();
+    }
+
+    private void open(int index, boolean vsAI) throws IOException {
+        Client client = new Client(vsAI, new Random(seed * 31 + index));
+        clients[index] = client;
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        client.channel = channel;
+        if (channel.connect(address)) {
+            join(client, channel.register(selector, SelectionKey.OP_READ, client));
+        } else {
+            channel.register(selector, SelectionKey.OP_CONNECT, client);
+        }
+    }
+
+    private void join(Client client, SelectionKey key) throws IOException {
+        key.interestOps(SelectionKey.OP_READ);
+        send(client, client.vsAI ? Protocol.JOIN_AI : Protocol.JOIN, rules.getWidth(), rules.getHeight(), rules.getWinLength());
+    }
+
+    private void poll(long timeoutMillis) throws IOException {
+        if (timeoutMillis == 0) {
+            selector.selectNow();
+        } else {
+            selector.select(timeoutMillis);
+        }
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Client client = (Client) key.attachment();
+            try {
+                if (key.isConnectable()) {
+                    client.channel.finishConnect();
+                    join(client, key);
+                } else if (key.isReadable()) {
+                    read(client, key);
+                }
+            } catch (IOException e) {
+                close(client);
+            }
+        }
+    }
+
+    private void read(Client client, SelectionKey key) throws IOException {
+        readBuffer.clear();
+        if (client.channel.read(readBuffer) < 0) {
+            close(client);
+            return;
+        }
+        readBuffer.flip();
+        while (client.assembler.add(readBuffer)) {
+            byte[] message = client.assembler.message();
+            switch (message[0]) {
+                case Protocol.START:
+                    started(client, message[1] & 0xFF);
+                    break;
+                case Protocol.MOVED:
+                    moved(client, key, message[1] & 0xFF);
+                    break;
+                case Protocol.OPPONENT_LEFT:
+                    client.side = Board.EMPTY;
+                    inMatch--;
+                    if (!stopping) join(client, key);
+                    break;
+                case Protocol.REJECTED:
+                    rejected++;
+                    client.pendingCell = -1;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void started(Client client, int side) throws IOException {
+        if (!client.everStarted) {
+            client.everStarted = true;
+            started++;
+        }
+        if (client.board == null) {
+            client.board = new Board(rules);
+        } else {
+            client.board.reset();
+        }
+        client.side = side;
+        client.pendingCell = -1;
+        inMatch++;
+        lastProgress = System.nanoTime();
+        playIfMyTurn(client);
+    }
+
+    private void moved(Client client, SelectionKey key, int cell) throws IOException {
+        long now = System.nanoTime();
+        Board board = client.board;
+        boolean mine = board.getCurrentPlayer() == client.side;
+        if (mine && cell == client.pendingCell) {
+            if (measuring) roundTrips.add(now - client.moveSentAt);
+            client.movedAt = now;
+            client.pendingCell = -1;
+            // every move is relayed to both players; count each once
+            movesPlayed++;
+        } else if (!mine) {
+            if (client.vsAI) {
+                if (measuring) aiReplies.add(now - client.movedAt);
+                movesPlayed++;
+            }
+        }
+        GameState state = board.play(cell);
+        lastProgress = now;
+        if (state != GameState.PLAYING) {
+            // human pairs see the end twice; the X side counts the game
+            if (client.vsAI || client.side == Board.X) gamesFinished++;
+            client.side = Board.EMPTY;
+            inMatch--;
+            if (!stopping) join(client, key);
+            return;
+        }
+        playIfMyTurn(client);
+    }
+
+    private void playIfMyTurn(Client client) throws IOException {
+        Board board = client.board;
+        if (board.getCurrentPlayer() != client.side || client.pendingCell >= 0) return;
+        int cell = board.nextEmpty(client.random.nextInt(board.getCellCount()));
+        if (cell < 0) cell = board.nextEmpty(0);
+        client.pendingCell = cell;
+        client.moveSentAt = System.nanoTime();
+        send(client, Protocol.MOVE, cell);
+    }
+
+    private int countMatches() {
+        int players = 0;
+        int aiMatches = 0;
+        for (Client client : clients) {
+            if (client.side == Board.EMPTY) continue;
+            if (client.vsAI) {
+                aiMatches++;
+            } else {
+                players++;
+            }
+        }
+        return aiMatches + players / 2;
+    }
+
+    private void close(Client client) throws IOException {
+        if (!client.channel.isOpen()) return;
+        client.channel.close();
+        if (client.side != Board.EMPTY) inMatch--;
+        client.side = Board.EMPTY;
+        disconnected++;
+        lastProgress = System.nanoTime();
+    }
+
+    private void send(Client client, byte type, int... arguments) throws IOException {
+        writeBuffer.clear();
+        writeBuffer.put(type);
+        for (int argument : arguments) {
+            writeBuffer.put((byte) argument);
+        }
+        writeBuffer.flip();
+        // the client never has more than one message in flight, which always fits the send buffer
+        client.channel.write(writeBuffer);
+    }
+
+    private boolean stalled() {
+        if (System.nanoTime() - lastProgress < STALL_NANOS) return false;
+        System.out.println("  no progress for " + STALL_NANOS / 1_000_000_000L + " s, giving up");
+        return true;
+    }
+}
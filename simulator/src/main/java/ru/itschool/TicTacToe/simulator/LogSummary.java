@@ -0,0 +1,87 @@
+package ru.itschool.TicTacToe.simulator;
+
+import ru.itschool.TicTacToe.engine.GameRecord;
+import ru.itschool.TicTacToe.engine.MoveLogReader;
+import ru.itschool.TicTacToe.engine.Rules;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Streams a move log of any size and prints per-rules results, game lengths and the most
+ * common first move. Only one game is held in memory at a time.
+ * <p>
+ * Usage: {@code LogSummary FILE}
+ */
+public final class LogSummary {
+    private static final String[] MODES = {"hotseat", "vs AI", "simulated", "online"};
+
+    private static final class Totals {
+        final Rules rules;
+        final long[] results = new long[4];
+        final long[] modes = new long[MODES.length + 1];
+        final long[] firstMoves;
+        long games;
+        long moves;
+
+        Totals(Rules rules) {
+            this.rules = rules;
+            this.firstMoves = new long[rules.getCellCount()];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: LogSummary FILE");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        Map<String, Totals> byRules = new TreeMap<>();
+        GameRecord record = new GameRecord();
+        long start = System.nanoTime();
+        long games;
+        try (MoveLogReader reader = MoveLogReader.open(file)) {
+            while (reader.next(record)) {
+                Totals totals = byRules.computeIfAbsent(record.getRules().getName(), name -> new Totals(record.getRules()));
+                totals.games++;
+                totals.moves += record.getMoveCount();
+                totals.results[record.getResult().ordinal()]++;
+                totals.modes[Math.min(record.getMode(), MODES.length)]++;
+                if (record.getMoveCount() > 0) totals.firstMoves[record.getMove(0)]++;
+            }
+            games = reader.getGamesRead();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long bytes = Files.size(file);
+
+        System.out.printf("%s: %d games, %d bytes (%.1f per game), read in %.2f s (%.0f games/s)%n",
+            file, games, bytes, games > 0 ? (double) bytes / games : 0, seconds, games / seconds);
+        for (Totals totals : byRules.values()) {
+            int firstMove = 0;
+            for (int cell = 1; cell < totals.firstMoves.length; cell++) {
+                if (totals.firstMoves[cell] > totals.firstMoves[firstMove]) firstMove = cell;
+            }
+            int width = totals.rules.getWidth();
+            System.out.printf("  %-10s %8d games  X %5.1f%%  O %5.1f%%  draw %5.1f%%  unfinished %d  "
+                    + "avg %.1f moves  most common first move (%d, %d)%n",
+                totals.rules.getName(), totals.games,
+                percent(totals.results[1], totals.games), percent(totals.results[2], totals.games),
+                percent(totals.results[3], totals.games), totals.results[0],
+                (double) totals.moves / totals.games, firstMove / width, firstMove % width);
+            StringBuilder modes = new StringBuilder("             ");
+            for (int mode = 0; mode < totals.modes.length; mode++) {
+                if (totals.modes[mode] == 0) continue;
+                modes.append(' ').append(mode < MODES.length ? MODES[mode] : "other").append(' ').append(totals.modes[mode]);
+            }
+            System.out.println(modes);
+        }
+    }
+
+    private static double percent(long count, long total) {
+        return total > 0 ? 100.0 * count / total : 0;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.itschool.TicTacToe.simulator;
+
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.Rules;
+
+/** Game results and move timings of one simulation thread, or of all of them once merged. */
+final class SimulationStats {
+    private final Rules rules;
+    private final String playerA;
+    private final String playerB;
+
+    private long games;
+    private long aWins;
+    private long bWins;
+    private long draws;
+    private long aMoves;
+    private long bMoves;
+    private long aMoveNanos;
+    private long bMoveNanos;
+    long elapsedNanos;
+
+    SimulationStats(Rules rules, String playerA, String playerB) {
+        this.rules = rules;
+        this.playerA = playerA;
+        this.playerB = playerB;
+    }
+
+    void recordMove(boolean byA, long nanos) {
+        if (byA) {
+            aMoves++;
+            aMoveNanos += nanos;
+        } else {
+            bMoves++;
+            bMoveNanos += nanos;
+        }
+    }
+
+    void recordGame(GameState state, boolean aIsX) {
+        games++;
+        if (state == GameState.DRAW) {
+            draws++;
+        } else if ((state == GameState.X_WON) == aIsX) {
+            aWins++;
+        } else {
+            bWins++;
+        }
+    }
+
+    void add(SimulationStats other) {
+        games += other.games;
+        aWins += other.aWins;
+        bWins += other.bWins;
+        draws += other.draws;
+        aMoves += other.aMoves;
+        bMoves += other.bMoves;
+        aMoveNanos += other.aMoveNanos;
+        bMoveNanos += other.bMoveNanos;
+    }
+
+    private static double percent(long count, long total) {
+        return total == 0 ? 0 : count * 100.0 / total;
+    }
+
+    private static double micros(long nanos, long moves) {
+        return moves == 0 ? 0 : nanos / 1e3 / moves;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d games of %s in %.2f s (%.0f games/s)%n"
+                + "A (%s): %.2f%% wins, %.3f us/move%n"
+                + "B (%s): %.2f%% wins, %.3f us/move%n"
+                + "draws: %.2f%%",
+            games, rules, elapsedNanos / 1e9, games * 1e9 / Math.max(1, elapsedNanos),
+            playerA, percent(aWins, games), micros(aMoveNanos, aMoves),
+            playerB, percent(bWins, games), micros(bMoveNanos, bMoves),
+            percent(draws, games));
+    }
+}
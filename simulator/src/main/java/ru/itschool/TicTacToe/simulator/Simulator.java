@@ -0,0 +1,173 @@
+package ru.itschool.TicTacToe.simulator;
+
+import ru.itschool.TicTacToe.engine.AIPlayer;
+import ru.itschool.TicTacToe.engine.AlphaBetaSearch;
+import ru.itschool.TicTacToe.engine.Board;
+import ru.itschool.TicTacToe.engine.GameRecord;
+import ru.itschool.TicTacToe.engine.GameState;
+import ru.itschool.TicTacToe.engine.MctsSearch;
+import ru.itschool.TicTacToe.engine.MoveLogWriter;
+import ru.itschool.TicTacToe.engine.OpeningBook;
+import ru.itschool.TicTacToe.engine.RandomPlayer;
+import ru.itschool.TicTacToe.engine.Rules;
+import ru.itschool.TicTacToe.engine.SearchEngine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays batches of headless games between two players on the same {@link Board} and
+ * {@link AlphaBetaSearch} the game uses, one game per thread at a time, and reports the results.
+ * <p>
+ * Options: {@code --games N}, {@code --rules 3x3|15x15/5}, {@code --a ai|mcts|random}, {@code --b ai|mcts|random},
+ * {@code --threads N}, {@code --time MS} for both AIs and {@code --depth N} for alpha-beta, {@code --seed N}, and
+ * {@code --swap} to alternate which player starts, and {@code --log FILE} to append every game to a move log.
+ * Opening books are read from the working directory.
+ */
+public final class Simulator {
+    private long games = 100_000;
+    private Rules rules = Rules.classic(3);
+    private String playerA = "ai";
+    private String playerB = "random";
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long timeMillis = 50;
+    private int depth = AlphaBetaSearch.MAX_PLY;
+    private long seed = 1;
+    private boolean swap;
+    private Path logFile;
+    private OpeningBook openingBook;
+    private MoveLogWriter log;
+
+    private final AtomicLong nextGame = new AtomicLong();
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        Simulator simulator = new Simulator();
+        simulator.parse(args);
+        simulator.loadOpeningBook();
+        System.out.println(simulator.run());
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--swap")) {
+                swap = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--games": games = Long.parseLong(value); break;
+                case "--rules": rules = Rules.parse(value); break;
+                case "--a": playerA = value; break;
+                case "--b": playerB = value; break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--time": timeMillis = Long.parseLong(value); break;
+                case "--depth": depth = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--log": logFile = Paths.get(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+    }
+
+    private void loadOpeningBook() throws IOException {
+        if (!rules.isClassic()) return;
+        Path file = Paths.get("book" + rules.getWidth() + "x" + rules.getHeight() + ".bin");
+        if (!Files.exists(file)) return;
+        try (InputStream in = Files.newInputStream(file)) {
+            openingBook = OpeningBook.read(in);
+        }
+    }
+
+    private SimulationStats run() throws IOException, InterruptedException, ExecutionException {
+        if (logFile != null) {
+            log = new MoveLogWriter(logFile);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<SimulationStats>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(this::playGames));
+        }
+        SimulationStats total = new SimulationStats(rules, playerA, playerB);
+        for (Future<SimulationStats> result : results) {
+            total.add(result.get());
+        }
+        total.elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+        if (log != null) {
+            log.close();
+        }
+        return total;
+    }
+
+    /** Claims and plays games until all of them are taken. */
+    private SimulationStats playGames() throws IOException {
+        SimulationStats stats = new SimulationStats(rules, playerA, playerB);
+        GameRecord record = new GameRecord();
+        AIPlayer a = createPlayer(playerA);
+        AIPlayer b = createPlayer(playerB);
+        Board board = new Board(rules);
+        for (long game = nextGame.getAndIncrement(); game < games; game = nextGame.getAndIncrement()) {
+            // reseeding per game keeps results independent of how games are spread over threads
+            seed(a, seed * 31 + game);
+            seed(b, ~(seed * 31 + game));
+            boolean aIsX = !swap || (game & 1) == 0;
+            board.reset();
+            record.start(rules, GameRecord.MODE_SIMULATED, System.currentTimeMillis());
+            while (board.getState() == GameState.PLAYING) {
+                boolean aToMove = (board.getCurrentPlayer() == Board.X) == aIsX;
+                long moveStart = System.nanoTime();
+                int cell = (aToMove ? a : b).chooseMove(board);
+                stats.recordMove(aToMove, System.nanoTime() - moveStart);
+                board.play(cell);
+                record.addMove(cell);
+            }
+            stats.recordGame(board.getState(), aIsX);
+            if (log != null) {
+                record.finish(board.getState(), System.currentTimeMillis());
+                log.append(record);
+            }
+        }
+        if (a instanceof SearchEngine) ((SearchEngine) a).close();
+        if (b instanceof SearchEngine) ((SearchEngine) b).close();
+        return stats;
+    }
+
+    private AIPlayer createPlayer(String type) {
+        switch (type) {
+            case "ai":
+                AlphaBetaSearch search = new AlphaBetaSearch();
+                search.setTimeBudgetMillis(timeMillis);
+                search.setMaxDepth(depth);
+                search.setOpeningBook(openingBook);
+                return search;
+            case "mcts":
+                MctsSearch mcts = new MctsSearch();
+                mcts.setTimeBudgetMillis(timeMillis);
+                return mcts;
+            case "random":
+                return new RandomPlayer(seed);
+            default:
+                throw new IllegalArgumentException("Unknown player type " + type + ", expected ai, mcts or random");
+        }
+    }
+
+    private static void seed(AIPlayer player, long seed) {
+        if (player instanceof RandomPlayer) ((RandomPlayer) player).setSeed(seed);
+        if (player instanceof MctsSearch) ((MctsSearch) player).setSeed(seed);
+    }
+}